@@ -0,0 +1,74 @@
+package com.alexvasilkov.android.commons.benchmarks;
+
+import com.alexvasilkov.android.commons.benchmarks.SampleData.Item;
+import com.alexvasilkov.android.commons.benchmarks.SampleData.ItemJson;
+import com.alexvasilkov.android.commons.converters.ChunkSink;
+import com.alexvasilkov.android.commons.converters.ConvertStream;
+import com.alexvasilkov.android.commons.converters.ConvertUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sequential vs. parallel vs. streaming conversion of collections of different sizes, to find
+ * out when parallel conversion starts to pay off.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConvertUtilsBenchmark {
+
+    @Param({ "100", "1000", "10000", "100000" })
+    public int size;
+
+    private List<ItemJson> items;
+    private final List<Item> buffer = new ArrayList<>();
+
+    @Setup
+    public void setup() {
+        items = SampleData.items(size);
+    }
+
+    @Benchmark
+    public List<Item> convert() {
+        return ConvertUtils.convert(items);
+    }
+
+    @Benchmark
+    public List<Item> convertParallel() {
+        return ConvertUtils.convertParallel(items, 256);
+    }
+
+    @Benchmark
+    public int convertInto() {
+        buffer.clear();
+        return ConvertUtils.convertInto(items, buffer);
+    }
+
+    @Benchmark
+    public Item[] convertToArray() {
+        return ConvertUtils.convertToArray(items, Item.class);
+    }
+
+    @Benchmark
+    public int streamInChunks(final Blackhole blackhole) {
+        return ConvertStream.convert(items).forEachChunk(500, new ChunkSink<Item>() {
+            @Override
+            public void onChunk(List<Item> chunk) {
+                blackhole.consume(chunk);
+            }
+        });
+    }
+
+}
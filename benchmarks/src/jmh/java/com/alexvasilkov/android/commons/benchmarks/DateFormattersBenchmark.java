@@ -0,0 +1,62 @@
+package com.alexvasilkov.android.commons.benchmarks;
+
+import com.alexvasilkov.android.commons.dates.ISO8601DateFormatter;
+import com.alexvasilkov.android.commons.dates.ThreadSafeDateFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DateFormattersBenchmark {
+
+    private static final String ISO_DATE = "1988-03-06T12:33:14.123+03:00";
+    private static final String ISO_DATE_UTC = "1988-03-06T12:33:14Z";
+    private static final String SIMPLE_DATE = "06.03.1988 12:33";
+
+    private final ThreadSafeDateFormatter formatter =
+            new ThreadSafeDateFormatter("dd.MM.yyyy HH:mm");
+    private final Date date = new Date(573824000000L);
+
+    @Benchmark
+    public Date parseISO8601() throws ParseException {
+        return ISO8601DateFormatter.parseISO8601(ISO_DATE);
+    }
+
+    @Benchmark
+    public Date parseISO8601Utc() throws ParseException {
+        return ISO8601DateFormatter.parseISO8601(ISO_DATE_UTC);
+    }
+
+    @Benchmark
+    public String formatISO8601() {
+        return ISO8601DateFormatter.formatISO8601(date);
+    }
+
+    @Benchmark
+    public Date threadSafeParse() throws ParseException {
+        return formatter.parse(SIMPLE_DATE);
+    }
+
+    @Benchmark
+    public String threadSafeFormat() {
+        return formatter.format(date);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String threadSafeFormatContended() {
+        return formatter.format(date);
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.alexvasilkov.android.commons.benchmarks;
+
+import com.alexvasilkov.android.commons.benchmarks.SampleData.Type;
+import com.alexvasilkov.android.commons.converters.ConvertUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cached enum lookup vs. linear case insensitive search over enum constants.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EnumLookupBenchmark {
+
+    @Param({ "EVENT", "event", "unknown" })
+    public String name;
+
+    @Benchmark
+    public Type cachedLookup() {
+        return ConvertUtils.convert(Type.class, name, null);
+    }
+
+    @Benchmark
+    public Type linearSearch() {
+        for (Type type : Type.class.getEnumConstants()) {
+            if (type.name().equalsIgnoreCase(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+}
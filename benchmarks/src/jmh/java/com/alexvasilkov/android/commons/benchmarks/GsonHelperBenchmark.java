@@ -0,0 +1,67 @@
+package com.alexvasilkov.android.commons.benchmarks;
+
+import com.alexvasilkov.android.commons.benchmarks.SampleData.ItemJson;
+import com.alexvasilkov.android.commons.utils.GsonHelper;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON strings vs. UTF-8 JSON bytes written with cached type adapter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GsonHelperBenchmark {
+
+    private static final Type TYPE = new TypeToken<List<ItemJson>>() {}.getType();
+
+    @Param({ "10", "1000" })
+    public int size;
+
+    private List<ItemJson> items;
+    private TypeAdapter<List<ItemJson>> adapter;
+    private String json;
+    private byte[] jsonBytes;
+
+    @Setup
+    public void setup() {
+        items = SampleData.items(size);
+        adapter = GsonHelper.getAdapter(TYPE);
+        json = GsonHelper.toJson(items);
+        jsonBytes = GsonHelper.toJsonBytes(items, adapter);
+    }
+
+    @Benchmark
+    public String toJsonString() {
+        return GsonHelper.toJson(items);
+    }
+
+    @Benchmark
+    public byte[] toJsonBytes() {
+        return GsonHelper.toJsonBytes(items, adapter);
+    }
+
+    @Benchmark
+    public List<ItemJson> fromJsonString() {
+        return GsonHelper.fromJson(json, TYPE);
+    }
+
+    @Benchmark
+    public List<ItemJson> fromJsonBytes() {
+        return GsonHelper.fromJson(jsonBytes, adapter);
+    }
+
+}
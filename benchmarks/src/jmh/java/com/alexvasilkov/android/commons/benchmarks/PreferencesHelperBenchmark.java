@@ -0,0 +1,115 @@
+package com.alexvasilkov.android.commons.benchmarks;
+
+import android.content.SharedPreferences;
+
+import com.alexvasilkov.android.commons.benchmarks.SampleData.ItemJson;
+import com.alexvasilkov.android.commons.prefs.PrefKey;
+import com.alexvasilkov.android.commons.prefs.PreferencesHelper;
+import com.google.gson.reflect.TypeToken;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.Serializable;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding costs of {@link PreferencesHelper} codecs, preferences are kept in
+ * memory to exclude disk I/O.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PreferencesHelperBenchmark {
+
+    private static final String KEY_ARRAY = "array";
+    private static final String KEY_LIST = "list";
+    private static final String KEY_SERIALIZABLE = "serializable";
+    private static final String KEY_JSON = "json";
+    private static final Type TYPE = new TypeToken<List<ItemJson>>() {}.getType();
+    private static final PrefKey<List<ItemJson>> JSON_KEY = PrefKey.ofJson(KEY_JSON, TYPE);
+
+    @Param({ "10", "1000" })
+    public int size;
+
+    private final SharedPreferences prefs = new InMemoryPreferences();
+    private String[] array;
+    private ArrayList<ItemJson> items;
+
+    @Setup
+    public void setup() {
+        array = new String[size];
+        for (int i = 0; i < size; i++) {
+            array[i] = "value_" + i;
+        }
+        items = new ArrayList<>(SampleData.items(size));
+
+        SharedPreferences.Editor editor = prefs.edit();
+        PreferencesHelper.putStringArray(editor, KEY_ARRAY, array);
+        PreferencesHelper.putStringList(editor, KEY_LIST, Arrays.asList(array));
+        PreferencesHelper.putSerializable(editor, KEY_SERIALIZABLE, items);
+        PreferencesHelper.putJson(editor, KEY_JSON, items);
+        editor.apply();
+    }
+
+    @Benchmark
+    public SharedPreferences.Editor putStringArray() {
+        return PreferencesHelper.putStringArray(prefs.edit(), KEY_ARRAY, array);
+    }
+
+    @Benchmark
+    public String[] getStringArray() {
+        return PreferencesHelper.getStringArray(prefs, KEY_ARRAY);
+    }
+
+    @Benchmark
+    public SharedPreferences.Editor putStringList() {
+        return PreferencesHelper.putStringList(prefs.edit(), KEY_LIST, Arrays.asList(array));
+    }
+
+    @Benchmark
+    public List<String> getStringList() {
+        return PreferencesHelper.getStringList(prefs, KEY_LIST);
+    }
+
+    @Benchmark
+    public SharedPreferences.Editor putSerializable() {
+        return PreferencesHelper.putSerializable(prefs.edit(), KEY_SERIALIZABLE, items);
+    }
+
+    @Benchmark
+    public Serializable getSerializable() {
+        return PreferencesHelper.getSerializable(prefs, KEY_SERIALIZABLE);
+    }
+
+    @Benchmark
+    public SharedPreferences.Editor putJson() {
+        return PreferencesHelper.putJson(prefs.edit(), KEY_JSON, items);
+    }
+
+    @Benchmark
+    public List<ItemJson> getJson() {
+        return PreferencesHelper.getJson(prefs, KEY_JSON, TYPE);
+    }
+
+    @Benchmark
+    public SharedPreferences.Editor putJsonKey() {
+        return JSON_KEY.put(prefs.edit(), items);
+    }
+
+    @Benchmark
+    public List<ItemJson> getJsonKey() {
+        return JSON_KEY.get(prefs);
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.alexvasilkov.android.commons.benchmarks;
+
+import android.content.SharedPreferences;
+
+import com.alexvasilkov.android.commons.benchmarks.SampleData.ItemJson;
+import com.alexvasilkov.android.commons.prefs.BinaryCodec;
+import com.alexvasilkov.android.commons.prefs.PreferencesHelper;
+import com.alexvasilkov.android.commons.prefs.PrefsCodec;
+import com.alexvasilkov.android.commons.prefs.PrefsCodecs;
+import com.google.gson.reflect.TypeToken;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Legacy {@link PreferencesHelper#putSerializable} vs. codecs used with
+ * {@link PreferencesHelper#putEncoded}, for list of items and for list of strings (where
+ * "binary" is {@link PrefsCodecs#stringList()}). Stored string sizes are printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PrefsCodecsBenchmark {
+
+    private static final String KEY = "key";
+    private static final String STRINGS_KEY = "strings";
+
+    @Param({ "legacy", "java", "gson", "binary" })
+    public String codecName;
+
+    @Param({ "10", "1000" })
+    public int size;
+
+    private final SharedPreferences prefs = new InMemoryPreferences();
+    private PrefsCodec<ArrayList<ItemJson>> codec;
+    private PrefsCodec<List<String>> stringsCodec;
+    private ArrayList<ItemJson> items;
+    private ArrayList<String> strings;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        items = new ArrayList<>(SampleData.items(size));
+        strings = new ArrayList<>(size);
+        for (ItemJson item : items) {
+            strings.add(item.title);
+        }
+
+        switch (codecName) {
+            case "java":
+                codec = (PrefsCodec<ArrayList<ItemJson>>) (PrefsCodec<?>)
+                        PrefsCodecs.javaSerialization();
+                stringsCodec = (PrefsCodec<List<String>>) (PrefsCodec<?>)
+                        PrefsCodecs.javaSerialization();
+                break;
+            case "gson":
+                codec = PrefsCodecs.gson(new TypeToken<ArrayList<ItemJson>>() {}.getType());
+                stringsCodec = PrefsCodecs.gson(new TypeToken<List<String>>() {}.getType());
+                break;
+            case "binary":
+                codec = new ItemsCodec();
+                stringsCodec = PrefsCodecs.stringList();
+                break;
+            default:
+                codec = null;
+                stringsCodec = null;
+        }
+
+        write();
+        writeStrings();
+        System.out.println("\nStored size (" + codecName + ", " + size + " items): "
+                + prefs.getString(KEY, null).length() + " chars");
+        System.out.println("Stored size (" + codecName + ", " + size + " strings): "
+                + prefs.getString(STRINGS_KEY, null).length() + " chars");
+    }
+
+    @Benchmark
+    public SharedPreferences.Editor write() {
+        return codec == null
+                ? PreferencesHelper.putSerializable(prefs.edit(), KEY, items)
+                : PreferencesHelper.putEncoded(prefs.edit(), KEY, items, codec);
+    }
+
+    @Benchmark
+    public Object read() {
+        return codec == null
+                ? PreferencesHelper.getSerializable(prefs, KEY)
+                : PreferencesHelper.getEncoded(prefs, KEY, codec);
+    }
+
+    @Benchmark
+    public SharedPreferences.Editor writeStrings() {
+        return stringsCodec == null
+                ? PreferencesHelper.putSerializable(prefs.edit(), STRINGS_KEY, strings)
+                : PreferencesHelper.putEncoded(prefs.edit(), STRINGS_KEY, strings, stringsCodec);
+    }
+
+    @Benchmark
+    public Object readStrings() {
+        return stringsCodec == null
+                ? PreferencesHelper.getSerializable(prefs, STRINGS_KEY)
+                : PreferencesHelper.getEncoded(prefs, STRINGS_KEY, stringsCodec);
+    }
+
+
+    private static class ItemsCodec extends BinaryCodec<ArrayList<ItemJson>> {
+        ItemsCodec() {
+            super("items", 1);
+        }
+
+        @Override
+        protected void write(ArrayList<ItemJson> value, DataOutputStream out)
+                throws IOException {
+            out.writeInt(value.size());
+            for (ItemJson item : value) {
+                out.writeLong(item.id);
+                out.writeUTF(item.title);
+                out.writeUTF(item.type);
+                out.writeUTF(item.date);
+            }
+        }
+
+        @Override
+        protected ArrayList<ItemJson> read(DataInputStream in, int version) throws IOException {
+            int size = in.readInt();
+            ArrayList<ItemJson> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                ItemJson item = new ItemJson();
+                item.id = in.readLong();
+                item.title = in.readUTF();
+                item.type = in.readUTF();
+                item.date = in.readUTF();
+                list.add(item);
+            }
+            return list;
+        }
+    }
+
+}
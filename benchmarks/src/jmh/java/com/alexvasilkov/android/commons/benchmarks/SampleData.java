@@ -0,0 +1,67 @@
+package com.alexvasilkov.android.commons.benchmarks;
+
+import com.alexvasilkov.android.commons.converters.ConvertUtils;
+import com.alexvasilkov.android.commons.converters.Convertable;
+import com.alexvasilkov.android.commons.dates.ISO8601DateFormatter;
+
+import java.io.Serializable;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Sample API objects used by benchmarks.
+ */
+final class SampleData {
+
+    enum Type {
+        ARTICLE, VIDEO, GALLERY, POLL, QUOTE, LINK, AUDIO, EVENT
+    }
+
+    static class ItemJson implements Convertable<Item>, Serializable {
+        long id;
+        String title;
+        String type;
+        String date;
+
+        @Override
+        public Item convert() throws ParseException {
+            Item item = new Item();
+            item.id = id;
+            item.title = title;
+            item.type = ConvertUtils.convert(Type.class, type, null);
+            item.date = ISO8601DateFormatter.parseISO8601(date);
+            return item;
+        }
+    }
+
+    static class Item {
+        long id;
+        String title;
+        Type type;
+        Date date;
+    }
+
+    private SampleData() {}
+
+    static List<ItemJson> items(int count) {
+        final Random random = new Random(42L);
+        final Type[] types = Type.values();
+        final long now = System.currentTimeMillis();
+
+        List<ItemJson> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ItemJson json = new ItemJson();
+            json.id = i;
+            json.title = "Item title #" + i;
+            json.type = types[random.nextInt(types.length)].name().toLowerCase();
+            json.date = ISO8601DateFormatter.formatISO8601(
+                    new Date(now - random.nextInt(Integer.MAX_VALUE) * 1000L));
+            list.add(json);
+        }
+        return list;
+    }
+
+}
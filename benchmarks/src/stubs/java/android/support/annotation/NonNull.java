@@ -0,0 +1,12 @@
+package android.support.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * Stub of support library's annotation.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+public @interface NonNull {}
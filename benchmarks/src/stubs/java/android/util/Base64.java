@@ -0,0 +1,44 @@
+package android.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Stub of Android's Base64 backed by {@link java.util.Base64}. Only flags used by the library
+ * are supported: {@link #DEFAULT} (MIME, with line breaks) and {@link #NO_WRAP}.
+ */
+public final class Base64 {
+
+    public static final int DEFAULT = 0;
+    public static final int NO_PADDING = 1;
+    public static final int NO_WRAP = 2;
+    public static final int URL_SAFE = 8;
+
+    private Base64() {}
+
+    public static String encodeToString(byte[] input, int flags) {
+        return new String(encode(input, flags), StandardCharsets.US_ASCII);
+    }
+
+    public static byte[] encode(byte[] input, int flags) {
+        java.util.Base64.Encoder encoder = (flags & URL_SAFE) != 0
+                ? java.util.Base64.getUrlEncoder()
+                : (flags & NO_WRAP) != 0
+                ? java.util.Base64.getEncoder()
+                : java.util.Base64.getMimeEncoder();
+        if ((flags & NO_PADDING) != 0) {
+            encoder = encoder.withoutPadding();
+        }
+        return encoder.encode(input);
+    }
+
+    public static byte[] decode(String str, int flags) {
+        return (flags & URL_SAFE) != 0
+                ? java.util.Base64.getUrlDecoder().decode(str)
+                : java.util.Base64.getMimeDecoder().decode(str);
+    }
+
+    public static byte[] decode(byte[] input, int flags) {
+        return decode(new String(input, StandardCharsets.US_ASCII), flags);
+    }
+
+}
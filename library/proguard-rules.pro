@@ -0,0 +1,21 @@
+# Consumer ProGuard rules, applied to apps using this library
+
+# Annotations and generic types are read at runtime by InstanceStateManager
+-keepattributes *Annotation*,Signature
+
+# State savers generated by annotation processor are looked up by name as
+# "<host class name>$$StateSaver", so both saver and host class names are kept
+-keep class **$$StateSaver { *; }
+
+-keepclasseswithmembernames class * {
+    @com.alexvasilkov.android.commons.state.InstanceState <fields>;
+}
+-keepclasseswithmembernames class * {
+    @com.alexvasilkov.android.commons.state.InstanceStateGson <fields>;
+}
+
+# Annotated fields are accessed through reflection if no saver was generated
+-keepclassmembers class * {
+    @com.alexvasilkov.android.commons.state.InstanceState <fields>;
+    @com.alexvasilkov.android.commons.state.InstanceStateGson <fields>;
+}
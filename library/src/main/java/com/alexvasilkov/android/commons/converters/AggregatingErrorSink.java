@@ -0,0 +1,123 @@
+package com.alexvasilkov.android.commons.converters;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Error sink which counts errors per item class and per error message and logs only sampled
+ * errors: first error of each item class and then each {@code sampleRate}-th one.<br/>
+ * Number of distinct tracked messages is limited by {@link #MAX_MESSAGES}, other messages are
+ * counted under {@link #OTHER_MESSAGES} key.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" }) // Public API
+public class AggregatingErrorSink implements ConvertErrorSink {
+
+    private static final String TAG = ConvertUtils.class.getSimpleName();
+
+    public static final int DEFAULT_SAMPLE_RATE = 100;
+    public static final int MAX_MESSAGES = 100;
+    public static final String OTHER_MESSAGES = "<other>";
+
+    private final int sampleRate;
+    private final AtomicInteger total = new AtomicInteger();
+    private final ConcurrentHashMap<Class<?>, AtomicInteger> byClass =
+            new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicInteger> byMessage =
+            new ConcurrentHashMap<>();
+
+    public AggregatingErrorSink() {
+        this(DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * @param sampleRate Only each {@code sampleRate}-th error of each item class is logged,
+     * 0 to disable logging
+     */
+    public AggregatingErrorSink(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public void onConvertError(@NonNull Object item, @NonNull ParseException e) {
+        total.incrementAndGet();
+
+        final int count = increment(byClass, item.getClass());
+
+        String message = String.valueOf(e.getMessage());
+        if (!byMessage.containsKey(message) && byMessage.size() >= MAX_MESSAGES) {
+            message = OTHER_MESSAGES;
+        }
+        increment(byMessage, message);
+
+        if (sampleRate > 0 && (count - 1) % sampleRate == 0) {
+            Log.e(TAG, "Error converting item (" + item.getClass().getSimpleName()
+                    + ") : " + e.getMessage() + " [" + count + " errors so far]");
+        }
+    }
+
+    public int getTotal() {
+        return total.get();
+    }
+
+    /**
+     * Returns snapshot of errors counts per converted item class.
+     */
+    @NonNull
+    public Map<Class<?>, Integer> getCountsByClass() {
+        return snapshot(byClass);
+    }
+
+    /**
+     * Returns snapshot of errors counts per error message.
+     */
+    @NonNull
+    public Map<String, Integer> getCountsByMessage() {
+        return snapshot(byMessage);
+    }
+
+    public void reset() {
+        total.set(0);
+        byClass.clear();
+        byMessage.clear();
+    }
+
+    /**
+     * Prints aggregated counters to logcat.
+     */
+    public void dump() {
+        Log.i(TAG, toString());
+    }
+
+    @Override
+    public String toString() {
+        return "Conversion errors: total=" + total.get() + ", byClass=" + getCountsByClass()
+                + ", byMessage=" + getCountsByMessage();
+    }
+
+    private static <K> int increment(ConcurrentHashMap<K, AtomicInteger> map, K key) {
+        AtomicInteger counter = map.get(key);
+        if (counter == null) {
+            counter = new AtomicInteger();
+            AtomicInteger existing = map.putIfAbsent(key, counter);
+            if (existing != null) {
+                counter = existing;
+            }
+        }
+        return counter.incrementAndGet();
+    }
+
+    private static <K> Map<K, Integer> snapshot(Map<K, AtomicInteger> map) {
+        Map<K, Integer> result = new HashMap<>();
+        for (Map.Entry<K, AtomicInteger> entry : map.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().get());
+        }
+        return result;
+    }
+
+}
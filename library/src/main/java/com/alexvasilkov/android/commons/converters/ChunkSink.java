@@ -0,0 +1,15 @@
+package com.alexvasilkov.android.commons.converters;
+
+import java.util.List;
+
+/**
+ * Receives items of {@link ConvertStream} in chunks of fixed size (last chunk can be smaller).
+ * <br/>
+ * Note: same list instance is reused for all chunks, it should not be kept after the call.
+ */
+@SuppressWarnings("WeakerAccess") // Public API
+public interface ChunkSink<T> {
+
+    void onChunk(List<T> chunk);
+
+}
@@ -0,0 +1,18 @@
+package com.alexvasilkov.android.commons.converters;
+
+import android.support.annotation.NonNull;
+
+import java.text.ParseException;
+
+/**
+ * Receives per-item conversion errors ignored by {@link ConvertUtils} and {@link ConvertStream}.
+ * <br/>
+ * Can be called from several threads concurrently and should be fast, since it is called for
+ * each failed item. See {@link ConvertUtils#setErrorSink(ConvertErrorSink)}.
+ */
+@SuppressWarnings("WeakerAccess") // Public API
+public interface ConvertErrorSink {
+
+    void onConvertError(@NonNull Object item, @NonNull ParseException e);
+
+}
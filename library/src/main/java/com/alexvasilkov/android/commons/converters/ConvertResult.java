@@ -0,0 +1,71 @@
+package com.alexvasilkov.android.commons.converters;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+
+/**
+ * Converted items along with counts of skipped and failed source items.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" }) // Public API
+public class ConvertResult<T> {
+
+    private final ArrayList<T> items;
+    private int skipped;
+    private int failed;
+
+    ConvertResult(int capacity) {
+        items = new ArrayList<>(capacity);
+    }
+
+    /**
+     * Successfully converted items, in source order.
+     */
+    @NonNull
+    public ArrayList<T> getItems() {
+        return items;
+    }
+
+    public int getConverted() {
+        return items.size();
+    }
+
+    /**
+     * Number of source items which were null or were converted to null.
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Number of source items which failed to convert with ParseException.
+     */
+    public int getFailed() {
+        return failed;
+    }
+
+    void onConverted(T item) {
+        items.add(item);
+    }
+
+    void onSkipped() {
+        skipped++;
+    }
+
+    void onFailed() {
+        failed++;
+    }
+
+    void addAll(@NonNull ConvertResult<T> result) {
+        items.addAll(result.items);
+        skipped += result.skipped;
+        failed += result.failed;
+    }
+
+    @Override
+    public String toString() {
+        return "ConvertResult: converted=" + items.size() + ", skipped=" + skipped
+                + ", failed=" + failed;
+    }
+
+}
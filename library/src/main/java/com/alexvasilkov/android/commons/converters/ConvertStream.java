@@ -0,0 +1,266 @@
+package com.alexvasilkov.android.commons.converters;
+
+import android.support.annotation.NonNull;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazy single-use sequence of items. Items are converted (and mapped, filtered, etc) only when
+ * they are read, so large sources can be processed without keeping all converted items in
+ * memory at once. E.g.:<br/>
+ * <code>ConvertStream.convert(response.items).filter(filter).forEachChunk(500, sink)</code>
+ * <br/>
+ * Same as in {@link ConvertUtils}, null items are skipped and per-item ParseExceptions are
+ * ignored.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" }) // Public API
+public class ConvertStream<T> implements Iterable<T> {
+
+    private Iterator<T> source;
+
+    private ConvertStream(@NonNull Iterator<T> source) {
+        this.source = source;
+    }
+
+    /**
+     * Creates stream of given items, null items are skipped.
+     */
+    public static <T> ConvertStream<T> from(@NonNull Iterable<T> items) {
+        return from(items.iterator());
+    }
+
+    /**
+     * Creates stream of given items, null items are skipped.
+     */
+    public static <T> ConvertStream<T> from(@NonNull final Iterator<T> items) {
+        return new ConvertStream<>(new LazyIterator<T>() {
+            @Override
+            Object computeNext() {
+                while (items.hasNext()) {
+                    T item = items.next();
+                    if (item != null) {
+                        return item;
+                    }
+                }
+                return END;
+            }
+        });
+    }
+
+    /**
+     * Creates stream of items converted from given convertable items.
+     */
+    public static <T, J extends Convertable<T>> ConvertStream<T> convert(@NonNull J[] array) {
+        return convert(Arrays.asList(array).iterator());
+    }
+
+    /**
+     * Creates stream of items converted from given convertable items.
+     */
+    public static <T, J extends Convertable<T>> ConvertStream<T> convert(
+            @NonNull Iterable<J> items) {
+        return convert(items.iterator());
+    }
+
+    /**
+     * Creates stream of items converted from given convertable items.
+     */
+    public static <T, J extends Convertable<T>> ConvertStream<T> convert(
+            @NonNull final Iterator<J> items) {
+        return new ConvertStream<>(new LazyIterator<T>() {
+            @Override
+            Object computeNext() {
+                while (items.hasNext()) {
+                    J json = items.next();
+                    try {
+                        T item = json == null ? null : json.convert();
+                        if (item != null) {
+                            return item;
+                        }
+                    } catch (ParseException e) {
+                        ConvertUtils.onParseError(json, e);
+                    }
+                }
+                return END;
+            }
+        });
+    }
+
+    /**
+     * Creates stream of output objects created from given items using provided creator.
+     */
+    public static <IN, OUT> ConvertStream<OUT> create(@NonNull Iterable<IN> items,
+            @NonNull Creator<IN, OUT> creator) {
+        return from(items).map(creator);
+    }
+
+    /**
+     * Creates stream of output objects created from given items using provided creator.
+     */
+    public static <IN, OUT> ConvertStream<OUT> create(@NonNull Iterator<IN> items,
+            @NonNull Creator<IN, OUT> creator) {
+        return from(items).map(creator);
+    }
+
+    /**
+     * Returns stream of items created from items of this stream, null results are skipped.
+     */
+    public <R> ConvertStream<R> map(@NonNull final Creator<T, R> creator) {
+        final Iterator<T> items = iterator();
+        return new ConvertStream<>(new LazyIterator<R>() {
+            @Override
+            Object computeNext() {
+                while (items.hasNext()) {
+                    R item = creator.create(items.next());
+                    if (item != null) {
+                        return item;
+                    }
+                }
+                return END;
+            }
+        });
+    }
+
+    /**
+     * Returns stream of items of this stream accepted by given filter.
+     */
+    public ConvertStream<T> filter(@NonNull final Filter<T> filter) {
+        final Iterator<T> items = iterator();
+        return new ConvertStream<>(new LazyIterator<T>() {
+            @Override
+            Object computeNext() {
+                while (items.hasNext()) {
+                    T item = items.next();
+                    if (filter.accept(item)) {
+                        return item;
+                    }
+                }
+                return END;
+            }
+        });
+    }
+
+    /**
+     * Returns stream of lists of up to {@code size} consecutive items of this stream.
+     * Each list is a new instance.
+     */
+    public ConvertStream<List<T>> batch(final int size) {
+        checkSize(size);
+        final Iterator<T> items = iterator();
+        return new ConvertStream<>(new LazyIterator<List<T>>() {
+            @Override
+            Object computeNext() {
+                if (!items.hasNext()) {
+                    return END;
+                }
+                List<T> batch = new ArrayList<>(size);
+                while (batch.size() < size && items.hasNext()) {
+                    batch.add(items.next());
+                }
+                return batch;
+            }
+        });
+    }
+
+    /**
+     * Reads all items into a list.
+     */
+    public ArrayList<T> toList() {
+        ArrayList<T> list = new ArrayList<>();
+        for (T item : this) {
+            list.add(item);
+        }
+        return list;
+    }
+
+    /**
+     * Reads all items passing them to the sink in chunks of given size.
+     *
+     * @return Total number of items
+     */
+    public int forEachChunk(int size, @NonNull ChunkSink<T> sink) {
+        checkSize(size);
+        final Iterator<T> items = iterator();
+        final List<T> chunk = new ArrayList<>(size);
+        int count = 0;
+
+        while (items.hasNext()) {
+            chunk.add(items.next());
+            count++;
+            if (chunk.size() == size || !items.hasNext()) {
+                sink.onChunk(chunk);
+                chunk.clear();
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns iterator over items of this stream. Stream can be read only once.
+     */
+    @NonNull
+    @Override
+    public Iterator<T> iterator() {
+        if (source == null) {
+            throw new IllegalStateException("Stream can only be read once");
+        }
+        Iterator<T> iterator = source;
+        source = null;
+        return iterator;
+    }
+
+    private static void checkSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Size should be positive");
+        }
+    }
+
+
+    /**
+     * Read-only iterator computing next item only when it is requested.
+     */
+    private abstract static class LazyIterator<T> implements Iterator<T> {
+        static final Object END = new Object();
+
+        private Object next;
+        private boolean computed;
+
+        /**
+         * Returns next item or {@link #END} if there are no more items.
+         */
+        abstract Object computeNext();
+
+        @Override
+        public boolean hasNext() {
+            if (!computed) {
+                next = computeNext();
+                computed = true;
+            }
+            return next != END;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T item = (T) next;
+            next = null;
+            computed = false;
+            return item;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
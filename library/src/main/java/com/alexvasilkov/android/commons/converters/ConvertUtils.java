@@ -1,6 +1,6 @@
 package com.alexvasilkov.android.commons.converters;
 
-import android.util.Log;
+import android.support.annotation.NonNull;
 
 import java.lang.reflect.Array;
 import java.text.ParseException;
@@ -8,10 +8,23 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
 @SuppressWarnings({ "WeakerAccess", "unused" }) // Public API
 public class ConvertUtils {
 
+    /**
+     * Default minimum number of items converted by a single thread in
+     * {@link #convertParallel(Collection)}.
+     */
+    public static final int DEFAULT_SPLIT_THRESHOLD = 1024;
+
+    private static final Map<Class<?>, Object[]> emptyArrays = new ConcurrentHashMap<>();
+
+    private static volatile ConvertErrorSink errorSink = new AggregatingErrorSink();
+
     // No instances
     private ConvertUtils() {}
 
@@ -34,30 +47,151 @@ public class ConvertUtils {
 
     /**
      * Converting collection of convertable items into ArrayList of target items.<br/>
-     * Note: per-item ParseExceptions are ignored.
+     * Note: per-item ParseExceptions are ignored, see {@link #setErrorSink(ConvertErrorSink)}.
      *
      * @param collection Collection of items to convert
      */
     public static <T, J extends Convertable<T>> ArrayList<T> convert(Collection<J> collection) {
+        return collection == null ? null : convertWithResult(collection).getItems();
+    }
+
+    /**
+     * Converting collection of convertable items into ArrayList of target items, along with
+     * counts of skipped and failed items.<br/>
+     * Note: per-item ParseExceptions are passed to the {@link #setErrorSink(ConvertErrorSink)
+     * error sink}.
+     *
+     * @param collection Collection of items to convert
+     */
+    public static <T, J extends Convertable<T>> ConvertResult<T> convertWithResult(
+            @NonNull Collection<J> collection) {
+        ConvertResult<T> result = new ConvertResult<>(collection.size());
+        convert(collection, result);
+        return result;
+    }
+
+    /**
+     * Converting collection of convertable items and appending target items to given list, which
+     * can be reused between calls to avoid allocations.<br/>
+     * Note: per-item ParseExceptions are ignored, see {@link #setErrorSink(ConvertErrorSink)}.
+     *
+     * @return Number of items added to the list
+     */
+    public static <T, J extends Convertable<T>> int convertInto(Collection<J> collection,
+            @NonNull List<T> out) {
         if (collection == null) {
-            return null;
+            return 0;
+        }
+
+        int count = 0;
+        for (J json : collection) {
+            try {
+                T item = json == null ? null : json.convert();
+                if (item != null) {
+                    out.add(item);
+                    count++;
+                }
+            } catch (ParseException e) {
+                onParseError(json, e);
+            }
         }
+        return count;
+    }
 
-        ArrayList<T> list = new ArrayList<>(collection.size());
+    /**
+     * Converting collection of convertable items into given array, which can be reused between
+     * calls to avoid allocations. Conversion stops once the array is full.<br/>
+     * Note: per-item ParseExceptions are ignored, see {@link #setErrorSink(ConvertErrorSink)}.
+     *
+     * @return Number of items written to the beginning of the array
+     */
+    public static <T, J extends Convertable<T>> int convertInto(Collection<J> collection,
+            @NonNull T[] out) {
+        if (collection == null) {
+            return 0;
+        }
 
+        int count = 0;
         for (J json : collection) {
+            if (count == out.length) {
+                break;
+            }
             try {
                 T item = json == null ? null : json.convert();
                 if (item != null) {
-                    list.add(item);
+                    out[count++] = item;
                 }
             } catch (ParseException e) {
-                Log.e("ConvertUtils", "Error converting item (" + json.getClass().getSimpleName()
-                        + ") : " + e.getMessage());
+                onParseError(json, e);
             }
         }
+        return count;
+    }
 
-        return list;
+    /**
+     * Same as {@link #convert(Convertable[])} but converts large arrays in parallel.<br/>
+     * See {@link #convertParallel(Collection, int)}.
+     */
+    public static <T, J extends Convertable<T>> ArrayList<T> convertParallel(J[] array) {
+        return convertParallel(array == null ? null : Arrays.asList(array));
+    }
+
+    /**
+     * Same as {@link #convert(Collection)} but converts large collections in parallel.<br/>
+     * See {@link #convertParallel(Collection, int)}.
+     */
+    public static <T, J extends Convertable<T>> ArrayList<T> convertParallel(
+            Collection<J> collection) {
+        return convertParallel(collection, DEFAULT_SPLIT_THRESHOLD);
+    }
+
+    /**
+     * Converting collection of convertable items into ArrayList of target items using several
+     * background threads. Items order is preserved.<br/>
+     * Collection is split into chunks of at least {@code splitThreshold} items, so collections
+     * which are not larger than {@code splitThreshold} are converted on the calling thread.<br/>
+     * Note: per-item ParseExceptions are ignored. Items should be safe to convert concurrently.
+     *
+     * @param collection Collection of items to convert
+     * @param splitThreshold Minimum number of items converted by a single thread
+     */
+    public static <T, J extends Convertable<T>> ArrayList<T> convertParallel(
+            Collection<J> collection, int splitThreshold) {
+        return collection == null
+                ? null : convertParallelWithResult(collection, splitThreshold).getItems();
+    }
+
+    /**
+     * Same as {@link #convertParallel(Collection, int)} but also returns counts of skipped and
+     * failed items.
+     */
+    public static <T, J extends Convertable<T>> ConvertResult<T> convertParallelWithResult(
+            @NonNull Collection<J> collection, int splitThreshold) {
+        if (splitThreshold < 1) {
+            throw new IllegalArgumentException("Split threshold should be positive");
+        }
+        return ParallelConverter.convert(collection, splitThreshold);
+    }
+
+    /**
+     * Sets sink receiving per-item conversion errors which are otherwise ignored.
+     * By default {@link AggregatingErrorSink} with default sample rate is used.
+     */
+    public static void setErrorSink(@NonNull ConvertErrorSink sink) {
+        errorSink = sink;
+    }
+
+    @NonNull
+    public static ConvertErrorSink getErrorSink() {
+        return errorSink;
+    }
+
+    /**
+     * Sets executor used by {@code convertParallel(...)} methods. By default a pool with
+     * a thread per CPU core is used.
+     */
+    public static void setParallelExecutor(@NonNull ExecutorService executor) {
+        ParallelConverter.setExecutor(executor);
     }
 
     /**
@@ -98,24 +232,15 @@ public class ConvertUtils {
     }
 
     /**
-     * Searches for enum of given class with given name (case insensitive).
+     * Searches for enum of given class with given name (case insensitive).<br/>
+     * Lookup tables are cached per enum class, see {@link EnumLookup}.
      *
      * @param type Enum class
      * @param name Enum constant name
      * @param defaultValue Default value if no enum constant with given name is found
      */
     public static <T extends Enum<T>> T convert(Class<T> type, String name, T defaultValue) {
-        if (name == null) {
-            return defaultValue;
-        }
-
-        for (T e : type.getEnumConstants()) {
-            if (e.name().equalsIgnoreCase(name)) {
-                return e;
-            }
-        }
-
-        return defaultValue;
+        return name == null ? defaultValue : EnumLookup.of(type).find(name, defaultValue);
     }
 
     /**
@@ -165,6 +290,64 @@ public class ConvertUtils {
         return list;
     }
 
+    /**
+     * Creates list of output objects using provided creator, inputs with equal keys (as returned
+     * by {@code keyCreator}) are mapped to the same output instance.<br/>
+     * Up to {@code maxCacheSize} recently created outputs are reused, see {@link DedupCreator}.
+     */
+    public static <IN, K, OUT> List<OUT> createDeduplicated(Collection<IN> collection,
+            Creator<IN, OUT> creator, Creator<IN, K> keyCreator, int maxCacheSize) {
+        return create(collection, new DedupCreator<>(creator, keyCreator, maxCacheSize));
+    }
+
+    /**
+     * Creates output objects using provided creator and appends them to given list, which can be
+     * reused between calls to avoid allocations.
+     *
+     * @return Number of items added to the list
+     */
+    public static <IN, OUT> int createInto(Collection<IN> collection, Creator<IN, OUT> creator,
+            @NonNull List<OUT> out) {
+        if (collection == null) {
+            return 0;
+        }
+
+        int count = 0;
+        for (IN value : collection) {
+            OUT item = value == null ? null : creator.create(value);
+            if (item != null) {
+                out.add(item);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Creates output objects using provided creator and writes them into given array, which can be
+     * reused between calls to avoid allocations. Creation stops once the array is full.
+     *
+     * @return Number of items written to the beginning of the array
+     */
+    public static <IN, OUT> int createInto(Collection<IN> collection, Creator<IN, OUT> creator,
+            @NonNull OUT[] out) {
+        if (collection == null) {
+            return 0;
+        }
+
+        int count = 0;
+        for (IN value : collection) {
+            if (count == out.length) {
+                break;
+            }
+            OUT item = value == null ? null : creator.create(value);
+            if (item != null) {
+                out[count++] = item;
+            }
+        }
+        return count;
+    }
+
     /**
      * Converting {@link java.util.List List} into array.<br/>
      * Note: array type is determined by class of the first non-null element in the list.
@@ -189,14 +372,71 @@ public class ConvertUtils {
     }
 
     /**
-     * Converting {@link java.util.List List} into array of given type.
+     * Converting {@link java.util.List List} into array of given type.<br/>
+     * Note: a new array is allocated for every non-empty collection, only empty arrays are shared.
+     * Use {@link #toArray(Collection, Object[])} with a reusable array to avoid allocations.
      */
-    @SuppressWarnings("unchecked")
     public static <T> T[] toArray(Collection<T> collection, Class<T> clazz) {
         if (collection == null) {
             return null;
         }
-        return collection.toArray((T[]) Array.newInstance(clazz, collection.size()));
+        // Collection allocates array of needed size itself (via Array.newInstance) if not empty
+        return collection.toArray(emptyArray(clazz));
+    }
+
+    /**
+     * Copying collection items into given array, which can be reused between calls to avoid
+     * allocations. Copying stops once the array is full.
+     *
+     * @return Number of items written to the beginning of the array
+     */
+    public static <T> int toArray(Collection<T> collection, @NonNull T[] out) {
+        if (collection == null) {
+            return 0;
+        }
+
+        int count = 0;
+        for (T item : collection) {
+            if (count == out.length) {
+                break;
+            }
+            out[count++] = item;
+        }
+        return count;
+    }
+
+    /**
+     * Returns cached empty array of given component type.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T[] emptyArray(@NonNull Class<T> clazz) {
+        Object[] array = emptyArrays.get(clazz);
+        if (array == null) {
+            array = (Object[]) Array.newInstance(clazz, 0);
+            emptyArrays.put(clazz, array);
+        }
+        return (T[]) array;
+    }
+
+    static <T, J extends Convertable<T>> void convert(@NonNull Iterable<J> items,
+            @NonNull ConvertResult<T> result) {
+        for (J json : items) {
+            try {
+                T item = json == null ? null : json.convert();
+                if (item != null) {
+                    result.onConverted(item);
+                } else {
+                    result.onSkipped();
+                }
+            } catch (ParseException e) {
+                result.onFailed();
+                onParseError(json, e);
+            }
+        }
+    }
+
+    static void onParseError(@NonNull Object json, @NonNull ParseException e) {
+        errorSink.onConvertError(json, e);
     }
 
 }
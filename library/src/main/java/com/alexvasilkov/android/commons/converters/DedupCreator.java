@@ -0,0 +1,78 @@
+package com.alexvasilkov.android.commons.converters;
+
+import android.support.annotation.NonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Creator which returns same output instance for all inputs with equal keys, e.g. for the same
+ * author embedded into thousands of items. Keys are provided by a separate key creator.<br/>
+ * Up to {@code maxSize} most recently used outputs are kept. Inputs with null key are always
+ * passed to the wrapped creator. Access is synchronized, so instance can be shared between
+ * threads, though it is meant to be used for a single import.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" }) // Public API
+public class DedupCreator<IN, K, OUT> implements Creator<IN, OUT> {
+
+    private final Creator<IN, OUT> creator;
+    private final Creator<IN, K> keyCreator;
+    private final Map<K, OUT> cache;
+
+    private int hits;
+    private int misses;
+
+    public DedupCreator(@NonNull Creator<IN, OUT> creator, @NonNull Creator<IN, K> keyCreator,
+            final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size should be positive");
+        }
+        this.creator = creator;
+        this.keyCreator = keyCreator;
+        this.cache = new LinkedHashMap<K, OUT>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, OUT> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    @Override
+    public synchronized OUT create(IN obj) {
+        final K key = keyCreator.create(obj);
+        if (key == null) {
+            return creator.create(obj);
+        }
+
+        OUT result = cache.get(key);
+        if (result == null) {
+            misses++;
+            result = creator.create(obj);
+            if (result != null) {
+                cache.put(key, result);
+            }
+        } else {
+            hits++;
+        }
+        return result;
+    }
+
+    /**
+     * Number of inputs for which cached output was returned.
+     */
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    /**
+     * Number of inputs for which new output was created.
+     */
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.alexvasilkov.android.commons.converters;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Case insensitive lookup of enum constants by name, backed by hash maps which are built once
+ * per enum class. Additional names can be registered with {@link #addAlias(String, Enum)}.<br/>
+ * Names are matched the same way as with {@link String#equalsIgnoreCase(String)}.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" }) // Public API
+public class EnumLookup<T extends Enum<T>> {
+
+    private static final ConcurrentMap<Class<?>, EnumLookup<?>> cache =
+            new ConcurrentHashMap<>();
+
+    // Maps are replaced on each change, so lookups need no locking
+    private volatile Map<String, T> exact;
+    private volatile Map<String, T> folded;
+
+    private EnumLookup(@NonNull Class<T> type) {
+        final Map<String, T> exact = new HashMap<>();
+        final Map<String, T> folded = new HashMap<>();
+        for (T constant : type.getEnumConstants()) {
+            exact.put(constant.name(), constant);
+            String key = fold(constant.name());
+            if (!folded.containsKey(key)) {
+                folded.put(key, constant); // First matching constant wins, as in linear search
+            }
+        }
+        this.exact = exact;
+        this.folded = folded;
+    }
+
+    /**
+     * Returns cached lookup for given enum class.
+     */
+    @NonNull
+    @SuppressWarnings("unchecked")
+    public static <T extends Enum<T>> EnumLookup<T> of(@NonNull Class<T> type) {
+        EnumLookup<T> lookup = (EnumLookup<T>) cache.get(type);
+        if (lookup == null) {
+            lookup = new EnumLookup<>(type);
+            // Another thread may have already stored (and added aliases to) its own instance
+            EnumLookup<T> existing = (EnumLookup<T>) cache.putIfAbsent(type, lookup);
+            if (existing != null) {
+                lookup = existing;
+            }
+        }
+        return lookup;
+    }
+
+    /**
+     * Searches for enum constant with given name or alias (case insensitive).
+     *
+     * @param name Enum constant name or alias
+     * @param defaultValue Default value if no enum constant with given name is found
+     */
+    public T find(@Nullable String name, T defaultValue) {
+        if (name == null) {
+            return defaultValue;
+        }
+        T value = exact.get(name);
+        if (value == null) {
+            value = folded.get(fold(name));
+        }
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * Registers additional name (case insensitive) for given enum constant.
+     * Aliases have lower priority than constant names.
+     */
+    public synchronized EnumLookup<T> addAlias(@NonNull String alias, @NonNull T value) {
+        final String key = fold(alias);
+        if (!folded.containsKey(key)) {
+            Map<String, T> exact = new HashMap<>(this.exact);
+            Map<String, T> folded = new HashMap<>(this.folded);
+            exact.put(alias, value);
+            folded.put(key, value);
+            this.exact = exact;
+            this.folded = folded;
+        }
+        return this;
+    }
+
+    /**
+     * Converts string into a form which is equal for all strings which are equal ignoring case.
+     */
+    private static String fold(String str) {
+        final int length = str.length();
+        char[] chars = null;
+        for (int i = 0; i < length; i++) {
+            char c = str.charAt(i);
+            char f = Character.toLowerCase(Character.toUpperCase(c));
+            if (f != c) {
+                if (chars == null) {
+                    chars = str.toCharArray();
+                }
+                chars[i] = f;
+            }
+        }
+        return chars == null ? str : new String(chars);
+    }
+
+}
@@ -0,0 +1,8 @@
+package com.alexvasilkov.android.commons.converters;
+
+@SuppressWarnings("WeakerAccess") // Public API
+public interface Filter<T> {
+
+    boolean accept(T item);
+
+}
@@ -0,0 +1,164 @@
+package com.alexvasilkov.android.commons.converters;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Converts large collections by splitting them into ordered chunks which are converted in
+ * parallel, first chunk is converted on the calling thread. Results are joined in input order.
+ * <br/>
+ * Calling thread converts all chunks which were not yet picked up by executor's threads instead
+ * of waiting for them, so conversion can't deadlock if executor is busy or saturated (e.g. when
+ * called from within another parallel conversion). Nested conversions running inside a chunk
+ * are converted sequentially.
+ */
+final class ParallelConverter {
+
+    private static final String TAG = ParallelConverter.class.getSimpleName();
+
+    private static final int PARALLELISM =
+            Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final int MAX_CHUNKS_PER_THREAD = 4;
+
+    private static final ThreadLocal<Boolean> inChunk = new ThreadLocal<Boolean>() {
+        @Override
+        protected Boolean initialValue() {
+            return false;
+        }
+    };
+
+    private static ExecutorService executor;
+
+    private ParallelConverter() {}
+
+    static synchronized void setExecutor(@NonNull ExecutorService executor) {
+        ParallelConverter.executor = executor;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            final AtomicInteger counter = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(PARALLELISM, PARALLELISM,
+                    10L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(@NonNull Runnable runnable) {
+                            Thread thread = new Thread(runnable,
+                                    TAG + "-" + counter.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    static <T, J extends Convertable<T>> ConvertResult<T> convert(
+            @NonNull Collection<J> collection, int threshold) {
+        final int size = collection.size();
+        if (size <= threshold || inChunk.get()) {
+            return ConvertUtils.convertWithResult(collection);
+        }
+
+        final List<J> items = collection instanceof List && collection instanceof RandomAccess
+                ? (List<J>) collection : new ArrayList<>(collection);
+
+        final int chunks = Math.min((size + threshold - 1) / threshold,
+                PARALLELISM * MAX_CHUNKS_PER_THREAD);
+        final int chunkSize = (size + chunks - 1) / chunks;
+
+        final ExecutorService executor = getExecutor();
+        final List<Chunk<T, J>> tasks = new ArrayList<>(chunks);
+        for (int from = chunkSize; from < size; from += chunkSize) {
+            final Chunk<T, J> chunk =
+                    new Chunk<>(items.subList(from, Math.min(from + chunkSize, size)));
+            try {
+                chunk.future = executor.submit(chunk);
+            } catch (RejectedExecutionException e) {
+                // Chunk will be converted on the calling thread
+            }
+            tasks.add(chunk);
+        }
+
+        final ConvertResult<T> result = new ConvertResult<>(size);
+        try {
+            ConvertUtils.convert(items.subList(0, Math.min(chunkSize, size)), result);
+            for (Chunk<T, J> chunk : tasks) {
+                if (chunk.claim()) {
+                    ConvertUtils.convert(chunk.items, result); // Not started yet, converting here
+                } else {
+                    result.addAll(chunk.future.get()); // Already running on another thread
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while converting items", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new RuntimeException("Error converting items", cause);
+            }
+        } finally {
+            for (Chunk<T, J> chunk : tasks) {
+                if (chunk.future != null) {
+                    chunk.future.cancel(true);
+                }
+            }
+        }
+
+        return result;
+    }
+
+
+    private static class Chunk<T, J extends Convertable<T>> implements Callable<ConvertResult<T>> {
+        final List<J> items;
+        final AtomicBoolean claimed = new AtomicBoolean();
+        Future<ConvertResult<T>> future;
+
+        Chunk(List<J> items) {
+            this.items = items;
+        }
+
+        /**
+         * Returns true if chunk was not yet claimed by any thread.
+         */
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        @Override
+        public ConvertResult<T> call() {
+            if (!claim()) {
+                return null; // Converted by the calling thread
+            }
+            inChunk.set(true);
+            try {
+                return ConvertUtils.convertWithResult(items);
+            } finally {
+                inChunk.set(false);
+            }
+        }
+    }
+
+}
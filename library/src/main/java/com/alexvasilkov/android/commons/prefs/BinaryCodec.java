@@ -0,0 +1,64 @@
+package com.alexvasilkov.android.commons.prefs;
+
+import android.support.annotation.NonNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Base codec for compact hand-written binary formats. Subclasses write and read fields
+ * explicitly, so unlike Java serialization the format does not depend on class structure and
+ * older data can be migrated by checking the version passed to
+ * {@link #read(DataInputStream, int)}.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" }) // Public API
+public abstract class BinaryCodec<T> implements PrefsCodec<T> {
+
+    private final String id;
+    private final int version;
+
+    protected BinaryCodec(@NonNull String id, int version) {
+        this.id = id;
+        this.version = version;
+    }
+
+    protected abstract void write(@NonNull T value, @NonNull DataOutputStream out)
+            throws IOException;
+
+    protected abstract T read(@NonNull DataInputStream in, int version) throws IOException;
+
+    @NonNull
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public int getVersion() {
+        return version;
+    }
+
+    @NonNull
+    @Override
+    public byte[] encode(@NonNull T value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        write(value, out);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public T decode(@NonNull byte[] data, int version) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        try {
+            return read(in, version);
+        } finally {
+            in.close();
+        }
+    }
+
+}
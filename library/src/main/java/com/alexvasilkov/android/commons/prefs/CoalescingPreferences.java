@@ -0,0 +1,334 @@
+package com.alexvasilkov.android.commons.prefs;
+
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * {@link SharedPreferences} facade which keeps in-memory copy of all values and coalesces
+ * writes: all changes applied within the configured time window are written to the underlying
+ * preferences with a single {@link SharedPreferences.Editor#apply()} call.<br/>
+ * Reads are served from memory. All writes to the underlying preferences should be done through
+ * this facade, otherwise they will not be visible until a new instance is created.<br/>
+ * Pending changes can be written immediately with {@link #flush()}, e.g. in
+ * {@code Activity.onPause()}. {@link SharedPreferences.Editor#commit()} writes all pending
+ * changes synchronously.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" }) // Public API
+public class CoalescingPreferences implements SharedPreferences {
+
+    public static final long DEFAULT_WINDOW = 500L;
+
+    private static final Object REMOVED = new Object();
+
+    private final SharedPreferences prefs;
+    private final long window;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final Object flushLock = new Object();
+    private final Map<String, Object> values;
+    private final Map<String, Object> pending = new HashMap<>();
+    private boolean pendingClear;
+    private boolean flushScheduled;
+
+    private final Map<OnSharedPreferenceChangeListener, Object> listeners = new WeakHashMap<>();
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    public CoalescingPreferences(@NonNull SharedPreferences prefs) {
+        this(prefs, DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param windowMillis Time during which changes are collected before being written
+     */
+    public CoalescingPreferences(@NonNull SharedPreferences prefs, long windowMillis) {
+        this.prefs = prefs;
+        this.window = windowMillis;
+        this.values = new HashMap<>(prefs.getAll());
+    }
+
+    @Override
+    public synchronized Map<String, ?> getAll() {
+        return new HashMap<>(values);
+    }
+
+    @Nullable
+    @Override
+    public synchronized String getString(String key, @Nullable String defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (String) value;
+    }
+
+    @Nullable
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized Set<String> getStringSet(String key, @Nullable Set<String> defValues) {
+        Object value = values.get(key);
+        return value == null ? defValues : (Set<String>) value;
+    }
+
+    @Override
+    public synchronized int getInt(String key, int defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (Integer) value;
+    }
+
+    @Override
+    public synchronized long getLong(String key, long defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (Long) value;
+    }
+
+    @Override
+    public synchronized float getFloat(String key, float defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (Float) value;
+    }
+
+    @Override
+    public synchronized boolean getBoolean(String key, boolean defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (Boolean) value;
+    }
+
+    @Override
+    public synchronized boolean contains(String key) {
+        return values.containsKey(key);
+    }
+
+    @Override
+    public Editor edit() {
+        return new CoalescingEditor();
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(
+            OnSharedPreferenceChangeListener listener) {
+        synchronized (listeners) {
+            listeners.put(listener, this);
+        }
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(
+            OnSharedPreferenceChangeListener listener) {
+        synchronized (listeners) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Asynchronously writes all pending changes to the underlying preferences.
+     */
+    public void flush() {
+        flush(false);
+    }
+
+    private boolean flush(boolean sync) {
+        // Flushes are serialized, so that older changes can't be written after newer ones
+        synchronized (flushLock) {
+            final Map<String, Object> changes;
+            final boolean clear;
+            synchronized (this) {
+                handler.removeCallbacks(flushTask);
+                flushScheduled = false;
+                if (pending.isEmpty() && !pendingClear) {
+                    return true;
+                }
+                changes = new HashMap<>(pending);
+                clear = pendingClear;
+                pending.clear();
+                pendingClear = false;
+            }
+
+            final Editor editor = prefs.edit();
+            if (clear) {
+                editor.clear();
+            }
+            for (Map.Entry<String, Object> entry : changes.entrySet()) {
+                write(editor, entry.getKey(), entry.getValue());
+            }
+
+            if (sync) {
+                return editor.commit();
+            } else {
+                editor.apply();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Applies editor's changes to in-memory values and returns changed keys.
+     */
+    private synchronized Set<String> applyToMemory(Map<String, Object> changes, boolean clear) {
+        final Set<String> changed = new LinkedHashSet<>();
+
+        if (clear) {
+            changed.addAll(values.keySet());
+            values.clear();
+            pending.clear();
+            pendingClear = true;
+        }
+
+        for (Map.Entry<String, Object> entry : changes.entrySet()) {
+            final String key = entry.getKey();
+            final Object value = entry.getValue();
+
+            if (value == REMOVED) {
+                if (!values.containsKey(key)) {
+                    continue;
+                }
+                values.remove(key);
+            } else {
+                if (value.equals(values.put(key, value))) {
+                    continue;
+                }
+            }
+            pending.put(key, value);
+            changed.add(key);
+        }
+
+        if (!flushScheduled && (pendingClear || !pending.isEmpty())) {
+            flushScheduled = true;
+            handler.postDelayed(flushTask, window);
+        }
+
+        return changed;
+    }
+
+    private void notifyListeners(final Set<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    notifyListeners(keys);
+                }
+            });
+            return;
+        }
+
+        final List<OnSharedPreferenceChangeListener> list;
+        synchronized (listeners) {
+            list = new ArrayList<>(listeners.keySet());
+        }
+        for (String key : keys) {
+            for (OnSharedPreferenceChangeListener listener : list) {
+                listener.onSharedPreferenceChanged(this, key);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void write(Editor editor, String key, Object value) {
+        if (value == REMOVED) {
+            editor.remove(key);
+        } else if (value instanceof String) {
+            editor.putString(key, (String) value);
+        } else if (value instanceof Integer) {
+            editor.putInt(key, (Integer) value);
+        } else if (value instanceof Long) {
+            editor.putLong(key, (Long) value);
+        } else if (value instanceof Float) {
+            editor.putFloat(key, (Float) value);
+        } else if (value instanceof Boolean) {
+            editor.putBoolean(key, (Boolean) value);
+        } else if (value instanceof Set) {
+            editor.putStringSet(key, (Set<String>) value);
+        }
+    }
+
+
+    private class CoalescingEditor implements Editor {
+        private final Map<String, Object> changes = new HashMap<>();
+        private boolean clear;
+
+        @Override
+        public Editor putString(String key, @Nullable String value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putStringSet(String key, @Nullable Set<String> values) {
+            return put(key, values == null
+                    ? null : Collections.unmodifiableSet(new HashSet<>(values)));
+        }
+
+        @Override
+        public Editor putInt(String key, int value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putLong(String key, long value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putFloat(String key, float value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor remove(String key) {
+            return put(key, null);
+        }
+
+        @Override
+        public synchronized Editor clear() {
+            clear = true;
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            notifyListeners(applyChanges());
+            return flush(true);
+        }
+
+        @Override
+        public void apply() {
+            notifyListeners(applyChanges());
+        }
+
+        private synchronized Editor put(String key, @Nullable Object value) {
+            changes.put(key, value == null ? REMOVED : value);
+            return this;
+        }
+
+        private synchronized Set<String> applyChanges() {
+            Set<String> changed = applyToMemory(changes, clear);
+            changes.clear();
+            clear = false;
+            return changed;
+        }
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.alexvasilkov.android.commons.prefs;
+
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Cache of objects decoded from preferences strings, keyed by preferences instance, key and
+ * requested type. Cached value is only returned if stored string is still the same, entries are
+ * also evicted once preferences listener reports a change of the key.<br/>
+ * Objects written with {@link PreferencesHelper} are remembered along with their encoded
+ * strings, keys and types, so reading a value which was just written requires no decoding
+ * either. Written object is only returned for the same key and exactly the same type.<br/>
+ * Note: cached objects are shared between all readers, including the code which wrote them.
+ */
+final class DecodedCache {
+
+    static final Object MISSING = new Object();
+
+    private static volatile boolean enabled;
+
+    // Encoded strings are kept alive by preferences while they are stored
+    private static final Map<String, Written> written = new WeakHashMap<>();
+    private static final Map<SharedPreferences, PrefsCache> caches = new WeakHashMap<>();
+
+    private DecodedCache() {}
+
+    static void setEnabled(boolean enabled) {
+        DecodedCache.enabled = enabled;
+        if (!enabled) {
+            synchronized (DecodedCache.class) {
+                written.clear();
+                caches.clear();
+            }
+        }
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Remembers object of given type which was encoded into given string and stored under given
+     * key. Preferences instance is not known at this point (editor does not expose it), so the
+     * object is returned for any preferences storing the same string under the same key.
+     */
+    static void onWrite(@NonNull String key, @NonNull Type type, @Nullable String encoded,
+            @Nullable Object value) {
+        if (enabled && encoded != null && value != null) {
+            synchronized (DecodedCache.class) {
+                written.put(encoded, new Written(key, type, value));
+            }
+        }
+    }
+
+    /**
+     * Returns cached value decoded from given raw string or {@link #MISSING} if there is no such
+     * value.
+     */
+    static synchronized Object get(@NonNull SharedPreferences prefs, @NonNull String key,
+            @NonNull Type type, @NonNull String raw) {
+        final PrefsCache cache = caches.get(prefs);
+        final Map<Type, Entry> entries = cache == null ? null : cache.values.get(key);
+        final Entry entry = entries == null ? null : entries.get(type);
+        if (entry != null && (entry.raw == raw || entry.raw.equals(raw))) {
+            return entry.value;
+        }
+
+        final Written write = written.get(raw);
+        if (write != null && write.key.equals(key) && write.type.equals(type)) {
+            put(prefs, key, type, raw, write.value);
+            return write.value;
+        }
+
+        return MISSING;
+    }
+
+    static synchronized void put(@NonNull SharedPreferences prefs, @NonNull String key,
+            @NonNull Type type, @NonNull String raw, @Nullable Object value) {
+        if (!enabled) {
+            return;
+        }
+        PrefsCache cache = caches.get(prefs);
+        if (cache == null) {
+            cache = new PrefsCache();
+            caches.put(prefs, cache);
+            prefs.registerOnSharedPreferenceChangeListener(cache);
+        }
+        Map<Type, Entry> entries = cache.values.get(key);
+        if (entries == null) {
+            entries = new HashMap<>();
+            cache.values.put(key, entries);
+        }
+        entries.put(type, new Entry(raw, value));
+    }
+
+    private static synchronized void onChanged(@NonNull PrefsCache cache,
+            @NonNull SharedPreferences prefs, @Nullable String key) {
+        if (key == null) { // Preferences were cleared
+            cache.values.clear();
+            return;
+        }
+        final Map<Type, Entry> entries = cache.values.get(key);
+        if (entries == null) {
+            return;
+        }
+
+        String raw;
+        try {
+            raw = prefs.getString(key, null);
+        } catch (ClassCastException e) {
+            raw = null;
+        }
+
+        // Entries for the value which was just written are still valid
+        for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().raw != raw) {
+                iterator.remove();
+            }
+        }
+        if (entries.isEmpty()) {
+            cache.values.remove(key);
+        }
+    }
+
+
+    private static class Written {
+        final String key;
+        final Type type;
+        final Object value;
+
+        Written(String key, Type type, Object value) {
+            this.key = key;
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    private static class Entry {
+        final String raw;
+        final Object value;
+
+        Entry(String raw, Object value) {
+            this.raw = raw;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Cached values of a single preferences instance. Should not reference preferences, since it
+     * is stored in weak map keyed by preferences.
+     */
+    private static class PrefsCache implements SharedPreferences.OnSharedPreferenceChangeListener {
+        final Map<String, Map<Type, Entry>> values = new HashMap<>();
+
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences prefs, String key) {
+            onChanged(this, prefs, key);
+        }
+    }
+
+}
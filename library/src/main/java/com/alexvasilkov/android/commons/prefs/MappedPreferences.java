@@ -0,0 +1,924 @@
+package com.alexvasilkov.android.commons.prefs;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+/**
+ * {@link SharedPreferences} implementation backed by memory-mapped append-only file, can be
+ * used with all {@link PreferencesHelper} methods.<br/>
+ * Changes are appended to the file instead of rewriting it, while int, long, float and boolean
+ * values are updated in place if stored value has the same type. File is compacted (rewritten
+ * into temporary file which then replaces the original one) once most of it is occupied by
+ * outdated records. Compaction runs on a background thread and is started over if values were
+ * changed while it was running.<br/>
+ * Each record is protected with a checksum and its type is written last, so a record which was
+ * not fully appended when the process was killed is ignored on next load. Record header has its
+ * own checksum, so records following a corrupted one are still located. Fixed size values have
+ * two slots with own checksums: new value is written into inactive slot and then a single byte
+ * switches to it, so interrupted in-place update keeps previous value. Corrupted records are
+ * skipped, all other records are still loaded and the file is compacted afterwards.<br/>
+ * {@link Editor#commit()} additionally flushes changes to disk, while {@link Editor#apply()}
+ * leaves it to the OS.<br/>
+ * Use {@link #open(Context, String)} to get an instance, it will migrate values from regular
+ * preferences file with the same name on first access.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" }) // Public API
+public class MappedPreferences implements SharedPreferences {
+
+    private static final String TAG = MappedPreferences.class.getSimpleName();
+
+    private static final String EXTENSION = ".mprefs";
+    private static final String TMP_EXTENSION = ".tmp";
+
+    private static final int MAGIC = 0x4d505246; // "MPRF"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    // Type, key length, value length and header checksum
+    private static final int RECORD_HEADER_SIZE = 11;
+    private static final int RECORD_HEADER_CRC_OFFSET = 7;
+    private static final int CRC_SIZE = 4;
+    private static final int VALUE_ALIGNMENT = 8;
+    // Fixed size value: active slot index, padded to 8 bytes, followed by two slots each having
+    // 8 bytes for the value, 4 bytes for the checksum and 4 bytes of padding
+    private static final int SLOT_OFFSET = 8;
+    private static final int SLOT_SIZE = 16;
+    private static final int SLOT_VALUE_SIZE = 8;
+    private static final int FIXED_VALUE_SIZE = SLOT_OFFSET + 2 * SLOT_SIZE;
+    private static final int MIN_CAPACITY = 4096;
+    private static final int MIN_COMPACT_SIZE = 16 * 1024;
+
+    private static final byte TYPE_END = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_FLOAT = 4;
+    private static final byte TYPE_BOOLEAN = 5;
+    private static final byte TYPE_STRING_SET = 6;
+    private static final byte TYPE_REMOVED = 7;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Object REMOVED = new Object();
+
+    private static final Map<File, MappedPreferences> instances = new HashMap<>();
+
+    private static final ExecutorService compactor =
+            Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    Thread thread = new Thread(runnable, TAG);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final File file;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final Map<String, Object> values = new HashMap<>();
+    private final Map<String, Record> records = new HashMap<>();
+    private final Map<OnSharedPreferenceChangeListener, Object> listeners = new WeakHashMap<>();
+
+    private RandomAccessFile raf;
+    private MappedByteBuffer buffer;
+    private int end; // Position after the last record
+    private int garbage; // Size of outdated records
+    private boolean corrupted; // Whether corrupted records were found during last load
+    private int modifications; // Number of changes, used to detect changes during compaction
+    private Future<?> compaction;
+
+    @VisibleForTesting
+    MappedPreferences(@NonNull File file) {
+        this.file = file;
+        synchronized (this) {
+            try {
+                load();
+            } catch (IOException e) {
+                throw new RuntimeException("Can't open preferences file: " + file, e);
+            }
+            if (corrupted) {
+                scheduleCompaction();
+            }
+        }
+    }
+
+    /**
+     * Returns preferences stored in app's files directory under given name. If there is no such
+     * file yet, all values from regular preferences with the same name are moved into it.
+     */
+    @NonNull
+    public static MappedPreferences open(@NonNull Context context, @NonNull String name) {
+        final File file = new File(context.getFilesDir(), name + EXTENSION);
+        synchronized (instances) {
+            MappedPreferences prefs = instances.get(file);
+            if (prefs == null) {
+                if (!file.exists()) {
+                    migrate(context.getSharedPreferences(name, Context.MODE_PRIVATE), file);
+                }
+                prefs = new MappedPreferences(file);
+                instances.put(file, prefs);
+            }
+            return prefs;
+        }
+    }
+
+    /**
+     * Returns preferences stored in given file.
+     */
+    @NonNull
+    public static MappedPreferences open(@NonNull File file) {
+        synchronized (instances) {
+            MappedPreferences prefs = instances.get(file);
+            if (prefs == null) {
+                prefs = new MappedPreferences(file);
+                instances.put(file, prefs);
+            }
+            return prefs;
+        }
+    }
+
+    @Override
+    public synchronized Map<String, ?> getAll() {
+        return new HashMap<>(values);
+    }
+
+    @Nullable
+    @Override
+    public synchronized String getString(String key, @Nullable String defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (String) value;
+    }
+
+    @Nullable
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized Set<String> getStringSet(String key, @Nullable Set<String> defValues) {
+        Object value = values.get(key);
+        return value == null ? defValues : (Set<String>) value;
+    }
+
+    @Override
+    public synchronized int getInt(String key, int defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (Integer) value;
+    }
+
+    @Override
+    public synchronized long getLong(String key, long defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (Long) value;
+    }
+
+    @Override
+    public synchronized float getFloat(String key, float defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (Float) value;
+    }
+
+    @Override
+    public synchronized boolean getBoolean(String key, boolean defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (Boolean) value;
+    }
+
+    @Override
+    public synchronized boolean contains(String key) {
+        return values.containsKey(key);
+    }
+
+    @Override
+    public Editor edit() {
+        return new MappedEditor();
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(
+            OnSharedPreferenceChangeListener listener) {
+        synchronized (listeners) {
+            listeners.put(listener, this);
+        }
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(
+            OnSharedPreferenceChangeListener listener) {
+        synchronized (listeners) {
+            listeners.remove(listener);
+        }
+    }
+
+
+    /* Reading */
+
+    private void load() throws IOException {
+        //noinspection ResultOfMethodCallIgnored
+        tmpFile(file).delete(); // Leftover of interrupted compaction, original file is intact
+
+        values.clear();
+        records.clear();
+        garbage = 0;
+        corrupted = false;
+
+        raf = new RandomAccessFile(file, "rw");
+        map((int) Math.max(raf.length(), MIN_CAPACITY));
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            if (raf.length() > MIN_CAPACITY || buffer.getInt(0) != 0) {
+                Log.w(TAG, "Unknown preferences file format, content is discarded: " + file);
+            }
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, FORMAT_VERSION);
+            end = HEADER_SIZE;
+            clearTail();
+            return;
+        }
+
+        end = HEADER_SIZE;
+        int pos = HEADER_SIZE;
+        while (true) {
+            final int next = readRecord(pos);
+            if (next != -1) {
+                pos = end = next;
+                continue;
+            }
+            // No valid record here, looking for any valid record further in the file
+            final int found = findRecord(pos + 1);
+            if (found == -1) {
+                break;
+            }
+            Log.w(TAG, "Corrupted record header, skipping to next valid record: " + file);
+            garbage += found - pos;
+            corrupted = true;
+            pos = found;
+        }
+
+        // There are no valid records after the last one. Zero type means there are no more
+        // records or the last record was not fully appended, so the tail can be safely cleared.
+        // Otherwise the tail is corrupted and is kept as is until the file is compacted.
+        if (end < buffer.capacity() && buffer.get(end) != TYPE_END) {
+            Log.w(TAG, "Corrupted record header at the end of the file: " + file);
+            corrupted = true;
+        } else {
+            clearTail();
+        }
+    }
+
+    /**
+     * Returns end position of the record at given position, or -1 if there is no valid record
+     * header at given position.
+     */
+    private int recordEnd(int pos) {
+        final int capacity = buffer.capacity();
+        if (pos < 0 || pos + RECORD_HEADER_SIZE > capacity) {
+            return -1;
+        }
+
+        final byte type = buffer.get(pos);
+        if (type <= TYPE_END || type > TYPE_REMOVED) {
+            return -1; // Type is a signed byte, so negative values are rejected explicitly
+        }
+
+        final byte[] header = new byte[RECORD_HEADER_CRC_OFFSET];
+        buffer.position(pos);
+        buffer.get(header);
+        if (crc(header, 0, header.length) != buffer.getInt(pos + RECORD_HEADER_CRC_OFFSET)) {
+            return -1;
+        }
+
+        final int keyLength = buffer.getShort(pos + 1) & 0xffff;
+        final int valueLength = buffer.getInt(pos + 3);
+        final long recordEnd = (long) valueStart(pos, keyLength) + valueLength + CRC_SIZE;
+        return valueLength < 0 || recordEnd > capacity ? -1 : (int) recordEnd;
+    }
+
+    /**
+     * Returns position of the first valid record header starting from given position, or -1.
+     */
+    private int findRecord(int from) {
+        for (int pos = from, last = buffer.capacity() - RECORD_HEADER_SIZE; pos <= last; pos++) {
+            if (recordEnd(pos) != -1) {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads record at given position and returns position of the next record, or -1 if there is
+     * no valid record header at given position. Records with valid header but invalid checksum
+     * are skipped.
+     */
+    private int readRecord(int pos) {
+        final int recordEnd = recordEnd(pos);
+        if (recordEnd == -1) {
+            return -1;
+        }
+
+        final byte type = buffer.get(pos);
+        final int keyLength = buffer.getShort(pos + 1) & 0xffff;
+        final int valueLength = buffer.getInt(pos + 3);
+        final int valueStart = valueStart(pos, keyLength);
+
+        final byte[] bytes = new byte[recordEnd - pos];
+        buffer.position(pos);
+        buffer.get(bytes);
+
+        final boolean fixed = isFixedSize(type);
+        final int crcLength = fixed ? valueStart - pos : bytes.length - CRC_SIZE;
+        final int slot = !fixed ? 0
+                : valueLength == FIXED_VALUE_SIZE ? activeSlot(bytes, valueStart - pos) : -1;
+        final int storedCrc = ByteBuffer.wrap(bytes).getInt(bytes.length - CRC_SIZE);
+        if (slot == -1 || crc(bytes, 0, crcLength) != storedCrc) {
+            Log.w(TAG, "Corrupted record is skipped: " + file);
+            garbage += bytes.length;
+            corrupted = true;
+            return recordEnd;
+        }
+
+        final String key = new String(bytes, RECORD_HEADER_SIZE, keyLength, UTF_8);
+        final Record previous;
+        if (type == TYPE_REMOVED) {
+            values.remove(key);
+            previous = records.remove(key);
+            garbage += bytes.length; // Removal records are not needed after compaction
+        } else {
+            final ByteBuffer value = fixed
+                    ? ByteBuffer.wrap(bytes, valueStart - pos + slotOffset(slot), SLOT_VALUE_SIZE)
+                    : ByteBuffer.wrap(bytes, valueStart - pos, valueLength);
+            values.put(key, decodeValue(type, value.slice()));
+            previous = records.put(key, new Record(pos, valueStart, bytes.length, type, slot));
+        }
+        if (previous != null) {
+            garbage += previous.size;
+        }
+
+        return recordEnd;
+    }
+
+    /**
+     * Returns index of the active slot of fixed size value, or the other slot if active one is
+     * corrupted, or -1 if both slots are corrupted.
+     */
+    private static int activeSlot(byte[] record, int valueStart) {
+        final int active = record[valueStart] & 1;
+        if (isValidSlot(record, valueStart + slotOffset(active))) {
+            return active;
+        } else if (isValidSlot(record, valueStart + slotOffset(1 - active))) {
+            return 1 - active;
+        } else {
+            return -1;
+        }
+    }
+
+    private static boolean isValidSlot(byte[] record, int slotStart) {
+        return crc(record, slotStart, SLOT_VALUE_SIZE)
+                == ByteBuffer.wrap(record).getInt(slotStart + SLOT_VALUE_SIZE);
+    }
+
+    private static Object decodeValue(byte type, ByteBuffer value) {
+        switch (type) {
+            case TYPE_STRING:
+                return new String(value.array(), value.arrayOffset(), value.remaining(), UTF_8);
+            case TYPE_INT:
+                return value.getInt();
+            case TYPE_LONG:
+                return value.getLong();
+            case TYPE_FLOAT:
+                return value.getFloat();
+            case TYPE_BOOLEAN:
+                return value.get() != 0;
+            case TYPE_STRING_SET:
+                final int count = value.getInt();
+                final Set<String> set = new HashSet<>(count);
+                for (int i = 0; i < count; i++) {
+                    int length = value.getInt();
+                    set.add(new String(value.array(), value.arrayOffset() + value.position(),
+                            length, UTF_8));
+                    value.position(value.position() + length);
+                }
+                return Collections.unmodifiableSet(set);
+            default:
+                throw new IllegalArgumentException("Unknown type: " + type);
+        }
+    }
+
+
+    /* Writing */
+
+    /**
+     * Applies editor's changes to memory and to the file, returns changed keys.
+     */
+    private synchronized Set<String> write(Map<String, Object> changes, boolean clear,
+            boolean sync) throws IOException {
+        final Set<String> changed = new LinkedHashSet<>();
+
+        if (clear && !values.isEmpty()) {
+            changed.addAll(values.keySet());
+            values.clear();
+            records.clear();
+            garbage = 0;
+            corrupted = false;
+            end = HEADER_SIZE;
+            clearTail();
+        }
+
+        for (Map.Entry<String, Object> entry : changes.entrySet()) {
+            final String key = entry.getKey();
+            final Object value = entry.getValue();
+
+            if (value == REMOVED) {
+                if (values.remove(key) != null) {
+                    garbage += records.remove(key).size;
+                    garbage += append(key, TYPE_REMOVED, new byte[0]);
+                    changed.add(key);
+                }
+            } else if (!value.equals(values.get(key))) {
+                final byte type = typeOf(value);
+                final byte[] bytes = encodeValue(type, value);
+                final Record record = records.get(key);
+
+                if (record != null && record.type == type && isFixedSize(type)) {
+                    updateInPlace(record, bytes);
+                } else {
+                    int pos = end;
+                    int size = append(key, type, bytes);
+                    Record previous = records.put(key,
+                            new Record(pos, valueStart(pos, utf8Length(key)), size, type, 0));
+                    if (previous != null) {
+                        garbage += previous.size;
+                    }
+                }
+                values.put(key, value);
+                changed.add(key);
+            }
+        }
+
+        if (!changed.isEmpty()) {
+            modifications++;
+            if (sync) {
+                buffer.force();
+            }
+        }
+        if (corrupted || (end > MIN_COMPACT_SIZE && garbage > end / 2)) {
+            scheduleCompaction();
+        }
+
+        return changed;
+    }
+
+    /**
+     * Appends new record and returns its size. Type is written last, so that incomplete record
+     * is never considered as valid.
+     */
+    private int append(String key, byte type, byte[] value) throws IOException {
+        final byte[] record = buildRecord(end, key, type, value);
+        ensureCapacity(end + record.length);
+        buffer.position(end + 1);
+        buffer.put(record, 1, record.length - 1);
+        buffer.put(end, type);
+        end += record.length;
+        return record.length;
+    }
+
+    /**
+     * Writes new value into inactive slot and only then switches to it, so that an interrupted
+     * update leaves previous value intact.
+     */
+    private void updateInPlace(Record record, byte[] value) {
+        final int slot = 1 - record.slot;
+        final byte[] slotBytes = slotBytes(value);
+        buffer.position(record.valueOffset + slotOffset(slot));
+        buffer.put(slotBytes);
+        buffer.put(record.valueOffset, (byte) slot);
+        record.slot = slot;
+    }
+
+    private void ensureCapacity(int required) throws IOException {
+        if (required > buffer.capacity()) {
+            map(Math.max(required, buffer.capacity() * 2));
+        }
+    }
+
+    private void map(int capacity) throws IOException {
+        if (raf.length() < capacity) {
+            raf.setLength(capacity); // Extended part is filled with zeros
+        }
+        buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0L, capacity);
+    }
+
+    /**
+     * Fills everything after the last record with zeros. First byte is cleared first, so that
+     * file is consistent at any moment.
+     */
+    private void clearTail() {
+        final int capacity = buffer.capacity();
+        if (end < capacity) {
+            buffer.put(end, TYPE_END);
+            for (int i = end + 1; i < capacity; i++) {
+                if (buffer.get(i) != 0) {
+                    buffer.put(i, (byte) 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Schedules compaction on background thread, if it is not scheduled yet.
+     */
+    private synchronized void scheduleCompaction() {
+        if (compaction == null) {
+            compaction = compactor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    compact();
+                }
+            });
+        }
+    }
+
+    /**
+     * Waits until scheduled compaction (including its restarts) is finished.
+     */
+    @VisibleForTesting
+    void awaitCompaction() throws ExecutionException, InterruptedException {
+        Future<?> future;
+        while (true) {
+            synchronized (this) {
+                future = compaction;
+            }
+            if (future == null) {
+                return;
+            }
+            future.get();
+        }
+    }
+
+    /**
+     * Rewrites snapshot of current values into temporary file which then atomically replaces the
+     * original file. Compaction is started over if values were changed while the temporary file
+     * was written. Current file is kept in use in case of errors.
+     */
+    private void compact() {
+        final Map<String, Object> snapshot;
+        final int version;
+        synchronized (this) {
+            snapshot = new HashMap<>(values);
+            version = modifications;
+        }
+
+        final File tmp = tmpFile(file);
+        try {
+            writeFile(tmp, snapshot); // Not holding the lock while writing and syncing the file
+        } catch (IOException e) {
+            Log.e(TAG, "Can't compact preferences file: " + file, e);
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            synchronized (this) {
+                compaction = null;
+            }
+            return;
+        }
+
+        synchronized (this) {
+            compaction = null;
+            if (version != modifications) {
+                //noinspection ResultOfMethodCallIgnored
+                tmp.delete(); // Snapshot is outdated
+                scheduleCompaction();
+                return;
+            }
+            try {
+                raf.close();
+                if (!tmp.renameTo(file)) {
+                    Log.e(TAG, "Can't replace preferences file: " + file);
+                }
+                load(); // Reopening either new or original file, both have all the values
+            } catch (IOException e) {
+                Log.e(TAG, "Can't reopen preferences file: " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Writes given values into new preferences file and flushes it to disk.
+     */
+    private static void writeFile(File target, Map<String, ?> values) throws IOException {
+        final List<byte[]> records = new ArrayList<>(values.size());
+        int size = HEADER_SIZE;
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            if (entry.getValue() != null) {
+                byte type = typeOf(entry.getValue());
+                byte[] record = buildRecord(size, entry.getKey(), type,
+                        encodeValue(type, entry.getValue()));
+                records.add(record);
+                size += record.length;
+            }
+        }
+
+        final FileOutputStream out = new FileOutputStream(target);
+        try {
+            out.write(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(FORMAT_VERSION)
+                    .array());
+            for (byte[] record : records) {
+                out.write(record);
+            }
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Moves all values from regular preferences into new file.
+     */
+    private static void migrate(SharedPreferences source, File target) {
+        final Map<String, ?> all = source.getAll();
+        if (all.isEmpty()) {
+            return;
+        }
+
+        final File tmp = tmpFile(target);
+        try {
+            writeFile(tmp, all);
+            if (!tmp.renameTo(target)) {
+                throw new IOException("Can't create preferences file: " + target);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Can't migrate preferences", e);
+        }
+
+        source.edit().clear().commit();
+    }
+
+    private static byte[] buildRecord(int pos, String key, byte type, byte[] value) {
+        if (isFixedSize(type)) {
+            // Initial value is stored in the first slot, which is active by default
+            final byte[] fixed = new byte[FIXED_VALUE_SIZE];
+            final byte[] slot = slotBytes(value);
+            System.arraycopy(slot, 0, fixed, slotOffset(0), slot.length);
+            // Mutable value is not covered by record's checksum, slots have own checksums
+            return buildRecord(pos, key, type, fixed, valueStart(pos, utf8Length(key)) - pos);
+        }
+        return buildRecord(pos, key, type, value, -1);
+    }
+
+    /**
+     * @param crcLength Length of record's part covered by the checksum, or -1 for whole record
+     */
+    private static byte[] buildRecord(int pos, String key, byte type, byte[] value,
+            int crcLength) {
+        final byte[] keyBytes = key.getBytes(UTF_8);
+        if (keyBytes.length > 0xffff) {
+            throw new IllegalArgumentException("Key is too long: " + key);
+        }
+        final int valueStart = valueStart(pos, keyBytes.length);
+        final int size = valueStart - pos + value.length + CRC_SIZE;
+
+        final ByteBuffer record = ByteBuffer.allocate(size);
+        record.put(type).putShort((short) keyBytes.length).putInt(value.length);
+        record.putInt(crc(record.array(), 0, RECORD_HEADER_CRC_OFFSET)).put(keyBytes);
+        record.position(valueStart - pos); // Padding is filled with zeros
+        record.put(value);
+        record.putInt(crc(record.array(), 0, crcLength == -1 ? record.position() : crcLength));
+        return record.array();
+    }
+
+    /**
+     * Value stored in slot, padded to slot value size and followed by its checksum.
+     */
+    private static byte[] slotBytes(byte[] value) {
+        final byte[] slot = new byte[SLOT_VALUE_SIZE + CRC_SIZE];
+        System.arraycopy(value, 0, slot, 0, value.length);
+        ByteBuffer.wrap(slot).putInt(SLOT_VALUE_SIZE, crc(slot, 0, SLOT_VALUE_SIZE));
+        return slot;
+    }
+
+    private static int slotOffset(int slot) {
+        return SLOT_OFFSET + slot * SLOT_SIZE;
+    }
+
+    private static byte typeOf(Object value) {
+        if (value instanceof String) {
+            return TYPE_STRING;
+        } else if (value instanceof Integer) {
+            return TYPE_INT;
+        } else if (value instanceof Long) {
+            return TYPE_LONG;
+        } else if (value instanceof Float) {
+            return TYPE_FLOAT;
+        } else if (value instanceof Boolean) {
+            return TYPE_BOOLEAN;
+        } else if (value instanceof Set) {
+            return TYPE_STRING_SET;
+        } else {
+            throw new IllegalArgumentException("Unsupported value type: " + value.getClass());
+        }
+    }
+
+    private static boolean isFixedSize(byte type) {
+        return type == TYPE_INT || type == TYPE_LONG || type == TYPE_FLOAT
+                || type == TYPE_BOOLEAN;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static byte[] encodeValue(byte type, Object value) {
+        switch (type) {
+            case TYPE_STRING:
+                return ((String) value).getBytes(UTF_8);
+            case TYPE_INT:
+                return ByteBuffer.allocate(4).putInt((Integer) value).array();
+            case TYPE_LONG:
+                return ByteBuffer.allocate(8).putLong((Long) value).array();
+            case TYPE_FLOAT:
+                return ByteBuffer.allocate(4).putFloat((Float) value).array();
+            case TYPE_BOOLEAN:
+                return new byte[] { (byte) ((Boolean) value ? 1 : 0) };
+            case TYPE_STRING_SET:
+                final Set<String> set = (Set<String>) value;
+                final List<byte[]> items = new ArrayList<>(set.size());
+                int size = 4;
+                for (String item : set) {
+                    byte[] bytes = item.getBytes(UTF_8);
+                    items.add(bytes);
+                    size += 4 + bytes.length;
+                }
+                final ByteBuffer result = ByteBuffer.allocate(size).putInt(items.size());
+                for (byte[] bytes : items) {
+                    result.putInt(bytes.length).put(bytes);
+                }
+                return result.array();
+            default:
+                throw new IllegalArgumentException("Unknown type: " + type);
+        }
+    }
+
+    /**
+     * Values are aligned, so that fixed size values can be updated in place with aligned writes.
+     */
+    private static int valueStart(int pos, int keyLength) {
+        final int start = pos + RECORD_HEADER_SIZE + keyLength;
+        return (start + VALUE_ALIGNMENT - 1) / VALUE_ALIGNMENT * VALUE_ALIGNMENT;
+    }
+
+    private static int crc(byte[] bytes, int offset, int length) {
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static int utf8Length(String str) {
+        return str.getBytes(UTF_8).length;
+    }
+
+    private static File tmpFile(File file) {
+        return new File(file.getPath() + TMP_EXTENSION);
+    }
+
+    private void notifyListeners(final Set<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    notifyListeners(keys);
+                }
+            });
+            return;
+        }
+
+        final List<OnSharedPreferenceChangeListener> list;
+        synchronized (listeners) {
+            list = new ArrayList<>(listeners.keySet());
+        }
+        for (String key : keys) {
+            for (OnSharedPreferenceChangeListener listener : list) {
+                listener.onSharedPreferenceChanged(this, key);
+            }
+        }
+    }
+
+
+    private static class Record {
+        final int offset;
+        final int valueOffset;
+        final int size;
+        final byte type;
+        int slot; // Active slot of fixed size value
+
+        Record(int offset, int valueOffset, int size, byte type, int slot) {
+            this.offset = offset;
+            this.valueOffset = valueOffset;
+            this.size = size;
+            this.type = type;
+            this.slot = slot;
+        }
+    }
+
+    private class MappedEditor implements Editor {
+        private final Map<String, Object> changes = new HashMap<>();
+        private boolean clear;
+
+        @Override
+        public Editor putString(String key, @Nullable String value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putStringSet(String key, @Nullable Set<String> values) {
+            return put(key, values == null
+                    ? null : Collections.unmodifiableSet(new HashSet<>(values)));
+        }
+
+        @Override
+        public Editor putInt(String key, int value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putLong(String key, long value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putFloat(String key, float value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor remove(String key) {
+            return put(key, null);
+        }
+
+        @Override
+        public synchronized Editor clear() {
+            clear = true;
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            return writeChanges(true);
+        }
+
+        @Override
+        public void apply() {
+            writeChanges(false);
+        }
+
+        private synchronized Editor put(String key, @Nullable Object value) {
+            changes.put(key, value == null ? REMOVED : value);
+            return this;
+        }
+
+        private synchronized boolean writeChanges(boolean sync) {
+            try {
+                notifyListeners(write(changes, clear, sync));
+                return true;
+            } catch (IOException e) {
+                Log.e(TAG, "Can't write preferences file: " + file, e);
+                return false;
+            } finally {
+                changes.clear();
+                clear = false;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,423 @@
+package com.alexvasilkov.android.commons.prefs;
+
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.alexvasilkov.android.commons.utils.GsonHelper;
+import com.google.gson.TypeAdapter;
+
+import java.io.Serializable;
+import java.lang.reflect.Type;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Typed preferences key, combines key name, default value and the way value is stored.<br/>
+ * Values are stored in the same format as used by corresponding {@link PreferencesHelper}
+ * methods, so both APIs can be used interchangeably. Codec is resolved once per key (e.g. Gson
+ * type adapter for JSON values), so keys should be stored as constants:
+ * <pre>
+ *   static final PrefKey&lt;User&gt; USER = PrefKey.ofJson("user", User.class);
+ *   ...
+ *   User user = USER.get(prefs);
+ *   USER.put(prefs.edit(), user).apply();
+ * </pre>
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" }) // Public API
+public final class PrefKey<T> {
+
+    private final String name;
+    private final T defaultValue;
+    private final Codec<T> codec;
+
+    private PrefKey(@NonNull String name, @Nullable T defaultValue, @NonNull Codec<T> codec) {
+        this.name = name;
+        this.defaultValue = defaultValue;
+        this.codec = codec;
+    }
+
+    @NonNull
+    public static PrefKey<Integer> ofInt(@NonNull String name, int defaultValue) {
+        return new PrefKey<>(name, defaultValue, INT);
+    }
+
+    @NonNull
+    public static PrefKey<Long> ofLong(@NonNull String name, long defaultValue) {
+        return new PrefKey<>(name, defaultValue, LONG);
+    }
+
+    @NonNull
+    public static PrefKey<Float> ofFloat(@NonNull String name, float defaultValue) {
+        return new PrefKey<>(name, defaultValue, FLOAT);
+    }
+
+    /**
+     * See {@link PreferencesHelper#putDouble(SharedPreferences.Editor, String, double)}.
+     */
+    @NonNull
+    public static PrefKey<Double> ofDouble(@NonNull String name, double defaultValue) {
+        return new PrefKey<>(name, defaultValue, DOUBLE);
+    }
+
+    @NonNull
+    public static PrefKey<Boolean> ofBoolean(@NonNull String name, boolean defaultValue) {
+        return new PrefKey<>(name, defaultValue, BOOLEAN);
+    }
+
+    @NonNull
+    public static PrefKey<String> ofString(@NonNull String name, @Nullable String defaultValue) {
+        return new PrefKey<>(name, defaultValue, STRING);
+    }
+
+    /**
+     * See {@link PreferencesHelper#putDate(SharedPreferences.Editor, String, Date)}.
+     */
+    @NonNull
+    public static PrefKey<Date> ofDate(@NonNull String name) {
+        return new PrefKey<>(name, null, DATE);
+    }
+
+    /**
+     * See {@link PreferencesHelper#putStringArray(SharedPreferences.Editor, String, String[],
+     * String) PreferencesHelper.putStringArray(...)}.
+     */
+    @NonNull
+    public static PrefKey<String[]> ofStringArray(@NonNull String name,
+            @NonNull String delimiter) {
+        return new PrefKey<>(name, null, new StringArrayCodec(delimiter));
+    }
+
+    /**
+     * Same as {@link #ofStringArray(String, String)} with
+     * {@link PreferencesHelper#DEFAULT_DELIMITER}.
+     */
+    @NonNull
+    public static PrefKey<String[]> ofStringArray(@NonNull String name) {
+        return ofStringArray(name, PreferencesHelper.DEFAULT_DELIMITER);
+    }
+
+    /**
+     * See {@link PreferencesHelper#putStringList(SharedPreferences.Editor, String,
+     * java.util.Collection) PreferencesHelper.putStringList(...)}.
+     */
+    @NonNull
+    public static PrefKey<List<String>> ofStringList(@NonNull String name) {
+        return new PrefKey<>(name, null, STRING_LIST);
+    }
+
+    /**
+     * See {@link PreferencesHelper#putSerializable(SharedPreferences.Editor, String,
+     * Serializable) PreferencesHelper.putSerializable(...)}.
+     */
+    @NonNull
+    public static <T extends Serializable> PrefKey<T> ofSerializable(@NonNull String name,
+            @NonNull Class<T> clazz) {
+        return new PrefKey<>(name, null, new SerializableCodec<>(clazz));
+    }
+
+    /**
+     * See {@link PreferencesHelper#putJson(SharedPreferences.Editor, String, Object)
+     * PreferencesHelper.putJson(...)}. Gson library should be available in classpath.
+     */
+    @NonNull
+    public static <T> PrefKey<T> ofJson(@NonNull String name, @NonNull Class<T> clazz) {
+        return new PrefKey<>(name, null, new JsonCodec<T>(clazz));
+    }
+
+    /**
+     * See {@link PreferencesHelper#putJson(SharedPreferences.Editor, String, Object)
+     * PreferencesHelper.putJson(...)}. Gson library should be available in classpath.
+     */
+    @NonNull
+    public static <T> PrefKey<T> ofJson(@NonNull String name, @NonNull Type type) {
+        return new PrefKey<>(name, null, new JsonCodec<T>(type));
+    }
+
+    /**
+     * See {@link PreferencesHelper#putEncoded(SharedPreferences.Editor, String, Object,
+     * PrefsCodec) PreferencesHelper.putEncoded(...)}.
+     */
+    @NonNull
+    public static <T> PrefKey<T> ofEncoded(@NonNull String name, @NonNull PrefsCodec<T> codec) {
+        return new PrefKey<>(name, null, new EncodedCodec<>(codec));
+    }
+
+    /**
+     * Returns key with same name and codec but with different default value.
+     */
+    @NonNull
+    public PrefKey<T> withDefault(@Nullable T defaultValue) {
+        return new PrefKey<>(name, defaultValue, codec);
+    }
+
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    @Nullable
+    public T getDefaultValue() {
+        return defaultValue;
+    }
+
+    /**
+     * Returns stored value or default value if value is missing or cannot be decoded.
+     */
+    public T get(@NonNull SharedPreferences prefs) {
+        return codec.get(prefs, name, defaultValue);
+    }
+
+    /**
+     * Stores given value. For object types <code>null</code> value removes the key.
+     */
+    @NonNull
+    public SharedPreferences.Editor put(@NonNull SharedPreferences.Editor editor,
+            @Nullable T value) {
+        if (value == null) {
+            codec.putNull(editor, name);
+        } else {
+            codec.put(editor, name, value);
+        }
+        return editor;
+    }
+
+    @NonNull
+    public SharedPreferences.Editor remove(@NonNull SharedPreferences.Editor editor) {
+        return editor.remove(name);
+    }
+
+    public boolean contains(@NonNull SharedPreferences prefs) {
+        return prefs.contains(name);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+
+    private abstract static class Codec<T> {
+        abstract T get(SharedPreferences prefs, String key, T defaultValue);
+
+        abstract void put(SharedPreferences.Editor editor, String key, @NonNull T value);
+
+        void putNull(SharedPreferences.Editor editor, String key) {
+            editor.remove(key);
+        }
+    }
+
+    private abstract static class StringCodec<T> extends Codec<T> {
+        @Override
+        final T get(SharedPreferences prefs, String key, T defaultValue) {
+            final String str = prefs.getString(key, null);
+            final T value = str == null ? null : decode(prefs, key, str);
+            return value == null ? defaultValue : value;
+        }
+
+        @Override
+        final void put(SharedPreferences.Editor editor, String key, @NonNull T value) {
+            editor.putString(key, encode(key, value));
+        }
+
+        abstract T decode(SharedPreferences prefs, String key, @NonNull String str);
+
+        abstract String encode(String key, @NonNull T value);
+    }
+
+
+    private static final Codec<Integer> INT = new Codec<Integer>() {
+        @Override
+        Integer get(SharedPreferences prefs, String key, Integer defaultValue) {
+            return prefs.getInt(key, defaultValue == null ? 0 : defaultValue);
+        }
+
+        @Override
+        void put(SharedPreferences.Editor editor, String key, @NonNull Integer value) {
+            editor.putInt(key, value);
+        }
+    };
+
+    private static final Codec<Long> LONG = new Codec<Long>() {
+        @Override
+        Long get(SharedPreferences prefs, String key, Long defaultValue) {
+            return prefs.getLong(key, defaultValue == null ? 0L : defaultValue);
+        }
+
+        @Override
+        void put(SharedPreferences.Editor editor, String key, @NonNull Long value) {
+            editor.putLong(key, value);
+        }
+    };
+
+    private static final Codec<Float> FLOAT = new Codec<Float>() {
+        @Override
+        Float get(SharedPreferences prefs, String key, Float defaultValue) {
+            return prefs.getFloat(key, defaultValue == null ? 0f : defaultValue);
+        }
+
+        @Override
+        void put(SharedPreferences.Editor editor, String key, @NonNull Float value) {
+            editor.putFloat(key, value);
+        }
+    };
+
+    private static final Codec<Double> DOUBLE = new Codec<Double>() {
+        @Override
+        Double get(SharedPreferences prefs, String key, Double defaultValue) {
+            return PreferencesHelper.getDouble(prefs, key,
+                    defaultValue == null ? 0d : defaultValue);
+        }
+
+        @Override
+        void put(SharedPreferences.Editor editor, String key, @NonNull Double value) {
+            PreferencesHelper.putDouble(editor, key, value);
+        }
+    };
+
+    private static final Codec<Boolean> BOOLEAN = new Codec<Boolean>() {
+        @Override
+        Boolean get(SharedPreferences prefs, String key, Boolean defaultValue) {
+            return prefs.getBoolean(key, defaultValue != null && defaultValue);
+        }
+
+        @Override
+        void put(SharedPreferences.Editor editor, String key, @NonNull Boolean value) {
+            editor.putBoolean(key, value);
+        }
+    };
+
+    private static final Codec<String> STRING = new Codec<String>() {
+        @Override
+        String get(SharedPreferences prefs, String key, String defaultValue) {
+            return prefs.getString(key, defaultValue);
+        }
+
+        @Override
+        void put(SharedPreferences.Editor editor, String key, @NonNull String value) {
+            editor.putString(key, value);
+        }
+    };
+
+    private static final Codec<Date> DATE = new Codec<Date>() {
+        @Override
+        Date get(SharedPreferences prefs, String key, Date defaultValue) {
+            final Date value = PreferencesHelper.getDate(prefs, key);
+            return value == null ? defaultValue : value;
+        }
+
+        @Override
+        void put(SharedPreferences.Editor editor, String key, @NonNull Date value) {
+            PreferencesHelper.putDate(editor, key, value);
+        }
+    };
+
+    private static final Codec<List<String>> STRING_LIST = new StringCodec<List<String>>() {
+        @Override
+        List<String> decode(SharedPreferences prefs, String key, @NonNull String str) {
+            return PreferencesHelper.toList(str, PreferencesHelper.DEFAULT_DELIMITER);
+        }
+
+        @Override
+        String encode(String key, @NonNull List<String> value) {
+            return StringListCodec.encode(value);
+        }
+    };
+
+    private static class StringArrayCodec extends Codec<String[]> {
+        private final String delimiter;
+
+        StringArrayCodec(String delimiter) {
+            this.delimiter = delimiter;
+        }
+
+        @Override
+        String[] get(SharedPreferences prefs, String key, String[] defaultValue) {
+            final String[] value = PreferencesHelper.getStringArray(prefs, key, delimiter);
+            return value == null ? defaultValue : value;
+        }
+
+        @Override
+        void put(SharedPreferences.Editor editor, String key, @NonNull String[] value) {
+            PreferencesHelper.putStringArray(editor, key, value, delimiter);
+        }
+    }
+
+    private static class SerializableCodec<T extends Serializable> extends Codec<T> {
+        private final Class<T> clazz;
+
+        SerializableCodec(Class<T> clazz) {
+            this.clazz = clazz;
+        }
+
+        @Override
+        T get(SharedPreferences prefs, String key, T defaultValue) {
+            final Serializable value = PreferencesHelper.getSerializable(prefs, key);
+            return clazz.isInstance(value) ? clazz.cast(value) : defaultValue;
+        }
+
+        @Override
+        void put(SharedPreferences.Editor editor, String key, @NonNull T value) {
+            PreferencesHelper.putSerializable(editor, key, value);
+        }
+    }
+
+    private static class EncodedCodec<T> extends StringCodec<T> {
+        private final PrefsCodec<T> codec;
+
+        EncodedCodec(PrefsCodec<T> codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        T decode(SharedPreferences prefs, String key, @NonNull String str) {
+            return PreferencesHelper.decode(str, codec);
+        }
+
+        @Override
+        String encode(String key, @NonNull T value) {
+            return PreferencesHelper.encode(value, codec);
+        }
+    }
+
+    private static class JsonCodec<T> extends StringCodec<T> {
+        private final Type type;
+        private volatile TypeAdapter<T> adapter;
+
+        JsonCodec(Type type) {
+            this.type = type;
+        }
+
+        private TypeAdapter<T> getAdapter() {
+            // Resolved lazily, so keys can be declared as constants even if Gson is not used
+            if (adapter == null) {
+                adapter = GsonHelper.getAdapter(type);
+            }
+            return adapter;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        T decode(SharedPreferences prefs, String key, @NonNull String json) {
+            if (!DecodedCache.isEnabled()) {
+                return GsonHelper.fromJson(json, getAdapter());
+            }
+
+            final Object cached = DecodedCache.get(prefs, key, type, json);
+            if (cached != DecodedCache.MISSING) {
+                return (T) cached;
+            }
+            final T value = GsonHelper.fromJson(json, getAdapter());
+            DecodedCache.put(prefs, key, type, json, value);
+            return value;
+        }
+
+        @Override
+        String encode(String key, @NonNull T value) {
+            final String json = GsonHelper.toJson(value, getAdapter());
+            DecodedCache.onWrite(key, type, json, value);
+            return json;
+        }
+    }
+
+}
@@ -14,7 +14,9 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.lang.reflect.Type;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Helper methods to store additional types of values to {@link SharedPreferences}.
@@ -24,6 +26,9 @@ public class PreferencesHelper {
 
     public static final String DEFAULT_DELIMITER = ",";
 
+    // Not a part of BASE_64 alphabet, so encoded values can't be confused with legacy ones
+    private static final String ENCODED_PREFIX = "~";
+
     /**
      * Converts and stores double value as long.
      */
@@ -84,7 +89,9 @@ public class PreferencesHelper {
     }
 
     /**
-     * Retrieves strings array stored as single string.
+     * Retrieves strings array stored as single string. Delimiter is matched literally, not as
+     * a regex. Values stored with {@link #putStringList(SharedPreferences.Editor, String,
+     * Collection) putStringList(...)} are also supported.
      *
      * @param delimiter Delimiter used to split the string.
      */
@@ -104,12 +111,67 @@ public class PreferencesHelper {
     }
 
     /**
-     * Stores serializable object as BASE_64 encoded string.
+     * Stores strings list as single string in length-prefixed format, so that values can contain
+     * any characters. Empty list and null elements are preserved.
+     */
+    @NonNull
+    public static SharedPreferences.Editor putStringList(@NonNull SharedPreferences.Editor editor,
+            @NonNull String key, @Nullable Collection<String> values) {
+        editor.putString(key, values == null ? null : StringListCodec.encode(values));
+        return editor;
+    }
+
+    /**
+     * Retrieves strings list stored with {@link #putStringList(SharedPreferences.Editor, String,
+     * Collection) putStringList(...)}. Elements are extracted lazily, returned list is read-only.
+     * <br/>
+     * Values stored with {@link #putStringArray(SharedPreferences.Editor, String, String[],
+     * String) putStringArray(...)} are also supported, given delimiter is used to split them.
+     */
+    @Nullable
+    public static List<String> getStringList(@NonNull SharedPreferences prefs,
+            @NonNull String key, @NonNull String legacyDelimiter) {
+        return toList(prefs.getString(key, null), legacyDelimiter);
+    }
+
+    /**
+     * Retrieves strings list stored with {@link #putStringList(SharedPreferences.Editor, String,
+     * Collection) putStringList(...)}. Uses {@link #DEFAULT_DELIMITER} for legacy values.
+     */
+    @Nullable
+    public static List<String> getStringList(@NonNull SharedPreferences prefs,
+            @NonNull String key) {
+        return getStringList(prefs, key, DEFAULT_DELIMITER);
+    }
+
+    /**
+     * Rewrites strings array stored with given delimiter into length-prefixed format, if it is
+     * not migrated yet. Changes are not committed.
+     */
+    @NonNull
+    public static SharedPreferences.Editor migrateStringArray(@NonNull SharedPreferences prefs,
+            @NonNull SharedPreferences.Editor editor, @NonNull String key,
+            @NonNull String delimiter) {
+        final String value = prefs.getString(key, null);
+        if (value != null && StringListCodec.tryDecode(value) == null) {
+            putStringList(editor, key, StringListCodec.splitLegacy(value, delimiter));
+        }
+        return editor;
+    }
+
+    /**
+     * Stores serializable object as BASE_64 encoded string.<br/>
+     * Consider using {@link #putEncoded(SharedPreferences.Editor, String, Object, PrefsCodec)
+     * putEncoded(...)} with a compact {@link BinaryCodec} or {@link PrefsCodecs#gson(Type) Gson}
+     * codec instead, Java serialization is slow and depends on class structure.
      */
     @NonNull
     public static SharedPreferences.Editor putSerializable(@NonNull SharedPreferences.Editor editor,
             @NonNull String key, @Nullable Serializable obj) {
-        editor.putString(key, serialize(obj));
+        final String serialized = serialize(obj);
+        // Deserialized object always has the same class, so there is no need to check it
+        DecodedCache.onWrite(key, Serializable.class, serialized, obj);
+        editor.putString(key, serialized);
         return editor;
     }
 
@@ -119,7 +181,53 @@ public class PreferencesHelper {
     @Nullable
     public static Serializable getSerializable(@NonNull SharedPreferences prefs,
             @NonNull String key) {
-        return deserialize(prefs.getString(key, null));
+        final String serialized = prefs.getString(key, null);
+        if (serialized == null || !DecodedCache.isEnabled()) {
+            return deserialize(serialized);
+        }
+
+        final Object cached = DecodedCache.get(prefs, key, Serializable.class, serialized);
+        if (cached != DecodedCache.MISSING) {
+            return (Serializable) cached;
+        }
+        final Serializable value = deserialize(serialized);
+        DecodedCache.put(prefs, key, Serializable.class, serialized, value);
+        return value;
+    }
+
+    /**
+     * Stores value encoded with given codec as BASE_64 encoded string, prefixed with codec's id
+     * and version.
+     */
+    @NonNull
+    public static <T> SharedPreferences.Editor putEncoded(@NonNull SharedPreferences.Editor editor,
+            @NonNull String key, @Nullable T value, @NonNull PrefsCodec<T> codec) {
+        editor.putString(key, encode(value, codec));
+        return editor;
+    }
+
+    /**
+     * Retrieves value stored with {@link #putEncoded(SharedPreferences.Editor, String, Object,
+     * PrefsCodec) putEncoded(...)}. Returns null if value is missing, cannot be decoded or was
+     * written by a different codec.
+     */
+    @Nullable
+    public static <T> T getEncoded(@NonNull SharedPreferences prefs, @NonNull String key,
+            @NonNull PrefsCodec<T> codec) {
+        return decode(prefs.getString(key, null), codec);
+    }
+
+    /**
+     * Enables cache of objects decoded by {@link #getJson(SharedPreferences, String, Type)
+     * getJson(...)} and {@link #getSerializable(SharedPreferences, String) getSerializable(...)}.
+     * Repeated reads of unchanged value will return the same cached instance, as well as reads of
+     * the object which was just stored with corresponding put method (for the same key and
+     * exactly the same type, e.g. object's class for {@code putJson(...)}).<br/>
+     * Cached objects are shared by all readers and with the code which stored them, so they
+     * should not be modified after they were stored or read. Disabled by default.
+     */
+    public static void setDecodedCacheEnabled(boolean enabled) {
+        DecodedCache.setEnabled(enabled);
     }
 
     /**
@@ -129,7 +237,12 @@ public class PreferencesHelper {
     @NonNull
     public static SharedPreferences.Editor putJson(@NonNull SharedPreferences.Editor editor,
             @NonNull String key, @Nullable Object obj) {
-        editor.putString(key, GsonHelper.toJson(obj));
+        final String json = GsonHelper.toJson(obj);
+        if (obj != null) {
+            // Gson writes object according to its runtime class
+            DecodedCache.onWrite(key, obj.getClass(), json, obj);
+        }
+        editor.putString(key, json);
         return editor;
     }
 
@@ -148,9 +261,21 @@ public class PreferencesHelper {
      * Gson library should be available in classpath.
      */
     @Nullable
+    @SuppressWarnings("unchecked")
     public static <T> T getJson(@NonNull SharedPreferences prefs,
             @NonNull String key, @NonNull Type type) {
-        return GsonHelper.fromJson(prefs.getString(key, null), type);
+        final String json = prefs.getString(key, null);
+        if (json == null || !DecodedCache.isEnabled()) {
+            return GsonHelper.fromJson(json, type);
+        }
+
+        final Object cached = DecodedCache.get(prefs, key, type, json);
+        if (cached != DecodedCache.MISSING) {
+            return (T) cached;
+        }
+        final T value = GsonHelper.fromJson(json, type);
+        DecodedCache.put(prefs, key, type, json, value);
+        return value;
     }
 
 
@@ -171,7 +296,56 @@ public class PreferencesHelper {
 
     @Nullable
     private static String[] split(@Nullable String value, @NonNull String delimeter) {
-        return value == null ? null : value.split(delimeter);
+        final List<String> list = toList(value, delimeter);
+        return list == null ? null : list.toArray(new String[list.size()]);
+    }
+
+    /**
+     * Decodes strings list stored either in length-prefixed format or in legacy delimited
+     * format. Value which starts with the header but has invalid format is a legacy value.
+     */
+    @Nullable
+    static List<String> toList(@Nullable String value, @NonNull String delimeter) {
+        if (value == null) {
+            return null;
+        }
+        final List<String> list = StringListCodec.tryDecode(value);
+        return list == null ? StringListCodec.splitLegacy(value, delimeter) : list;
+    }
+
+    @Nullable
+    static <T> String encode(@Nullable T value, @NonNull PrefsCodec<T> codec) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return ENCODED_PREFIX + codec.getId() + ':' + codec.getVersion() + ':'
+                    + Base64.encodeToString(codec.encode(value), Base64.NO_WRAP);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Nullable
+    static <T> T decode(@Nullable String encoded, @NonNull PrefsCodec<T> codec) {
+        if (encoded == null || !encoded.startsWith(ENCODED_PREFIX)) {
+            return null;
+        }
+        final int idEnd = encoded.indexOf(':', ENCODED_PREFIX.length());
+        final int versionEnd = idEnd == -1 ? -1 : encoded.indexOf(':', idEnd + 1);
+        if (versionEnd == -1
+                || !codec.getId().equals(encoded.substring(ENCODED_PREFIX.length(), idEnd))) {
+            return null;
+        }
+        try {
+            int version = Integer.parseInt(encoded.substring(idEnd + 1, versionEnd));
+            byte[] data = Base64.decode(encoded.substring(versionEnd + 1), Base64.NO_WRAP);
+            return codec.decode(data, version);
+        } catch (IOException | IllegalArgumentException e) {
+            e.printStackTrace();
+            return null;
+        }
     }
 
     @Nullable
@@ -184,7 +358,7 @@ public class PreferencesHelper {
             ObjectOutputStream out = new ObjectOutputStream(byteOut);
             out.writeObject(obj);
             out.close();
-            return Base64.encodeToString(byteOut.toByteArray(), Base64.DEFAULT);
+            return Base64.encodeToString(byteOut.toByteArray(), Base64.NO_WRAP);
         } catch (IOException e) {
             e.printStackTrace();
             return null;
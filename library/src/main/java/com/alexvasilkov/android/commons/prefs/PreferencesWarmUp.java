@@ -0,0 +1,185 @@
+package com.alexvasilkov.android.commons.prefs;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads preferences files in parallel on background threads, so that first access to them
+ * from the main thread does not block on reading and parsing the files. Should be started as
+ * early as possible, e.g. in {@code Application.onCreate()}:
+ * <pre>
+ *   warmUp = PreferencesWarmUp.start(this, "settings", "session", "cache");
+ * </pre>
+ * Use {@link #get(String)} to access warmed up preferences, it waits for the file to be loaded
+ * if needed and measures the waiting time. See {@link #getSavedTime()}.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" }) // Public API
+public class PreferencesWarmUp {
+
+    private static final String TAG = PreferencesWarmUp.class.getSimpleName();
+
+    private final Context context;
+    private final CountDownLatch ready;
+    private final Map<String, CountDownLatch> loaded = new HashMap<>();
+    private final Map<String, Long> loadTimes = new ConcurrentHashMap<>();
+    private final AtomicLong blockedTime = new AtomicLong();
+
+    private PreferencesWarmUp(@NonNull Context context, @NonNull String[] names) {
+        this.context = context.getApplicationContext();
+        for (String name : names) {
+            loaded.put(name, new CountDownLatch(1));
+        }
+        this.ready = new CountDownLatch(loaded.size());
+    }
+
+    /**
+     * Starts loading of given preferences files on background threads.
+     */
+    @NonNull
+    public static PreferencesWarmUp start(@NonNull Context context, @NonNull String... names) {
+        final PreferencesWarmUp warmUp = new PreferencesWarmUp(context, names);
+        if (names.length == 0) {
+            return warmUp;
+        }
+
+        final int threads = Math.min(names.length, Runtime.getRuntime().availableProcessors());
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        for (final String name : warmUp.loaded.keySet()) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    warmUp.load(name);
+                }
+            });
+        }
+        executor.shutdown();
+
+        return warmUp;
+    }
+
+    private void load(String name) {
+        final long start = System.nanoTime();
+        try {
+            // Returns only when the file is fully loaded
+            context.getSharedPreferences(name, Context.MODE_PRIVATE).contains(name);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Can't load preferences: " + name, e);
+        } finally {
+            loadTimes.put(name, System.nanoTime() - start);
+            loaded.get(name).countDown();
+            ready.countDown();
+        }
+    }
+
+    /**
+     * Whether all preferences files are loaded.
+     */
+    public boolean isReady() {
+        return ready.getCount() == 0L;
+    }
+
+    /**
+     * Waits until all preferences files are loaded.
+     */
+    public void await() throws InterruptedException {
+        final long start = System.nanoTime();
+        ready.await();
+        blockedTime.addAndGet(System.nanoTime() - start);
+    }
+
+    /**
+     * Waits until all preferences files are loaded, returns false if timeout elapsed first.
+     */
+    public boolean await(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        final long start = System.nanoTime();
+        final boolean result = ready.await(timeout, unit);
+        blockedTime.addAndGet(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Returns preferences with given name, waiting until the file is loaded if it was warmed up
+     * and is not loaded yet.
+     */
+    @NonNull
+    public SharedPreferences get(@NonNull String name) {
+        final CountDownLatch latch = loaded.get(name);
+        if (latch != null && latch.getCount() > 0L) {
+            final long start = System.nanoTime();
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            blockedTime.addAndGet(System.nanoTime() - start);
+        }
+        return context.getSharedPreferences(name, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Background loading time of each loaded file, in milliseconds.
+     */
+    @NonNull
+    public Map<String, Long> getLoadTimes() {
+        final Map<String, Long> result = new HashMap<>();
+        for (Map.Entry<String, Long> entry : loadTimes.entrySet()) {
+            result.put(entry.getKey(), TimeUnit.NANOSECONDS.toMillis(entry.getValue()));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Total background loading time of all loaded files, in milliseconds. This is roughly the
+     * time the main thread would be blocked if all files were loaded on first access.
+     */
+    public long getTotalLoadTime() {
+        long total = 0L;
+        for (Long time : loadTimes.values()) {
+            total += time;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(total);
+    }
+
+    /**
+     * Time spent waiting for the files to load in {@link #get(String)} and {@code await()}
+     * methods, in milliseconds.
+     */
+    public long getBlockedTime() {
+        return TimeUnit.NANOSECONDS.toMillis(blockedTime.get());
+    }
+
+    /**
+     * Estimated blocking time saved by warming up, in milliseconds.
+     */
+    public long getSavedTime() {
+        return Math.max(0L, getTotalLoadTime() - getBlockedTime());
+    }
+
+    @Override
+    public String toString() {
+        return "PreferencesWarmUp: ready=" + isReady() + ", loaded=" + getTotalLoadTime()
+                + "ms, blocked=" + getBlockedTime() + "ms, saved=" + getSavedTime() + "ms, files="
+                + getLoadTimes();
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.alexvasilkov.android.commons.prefs;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+
+/**
+ * Converts values to and from bytes stored in preferences with
+ * {@link PreferencesHelper#putEncoded(android.content.SharedPreferences.Editor, String, Object,
+ * PrefsCodec) PreferencesHelper.putEncoded(...)}.<br/>
+ * Codec id and version are stored along with encoded bytes, so data written by older version of
+ * the codec can still be decoded. See {@link PrefsCodecs} for available implementations.
+ */
+@SuppressWarnings("WeakerAccess") // Public API
+public interface PrefsCodec<T> {
+
+    /**
+     * Short unique codec id, should not contain ':' character.
+     */
+    @NonNull
+    String getId();
+
+    /**
+     * Version of data format written by {@link #encode(Object)}.
+     */
+    int getVersion();
+
+    @NonNull
+    byte[] encode(@NonNull T value) throws IOException;
+
+    /**
+     * @param version Version of the codec which encoded given data
+     */
+    T decode(@NonNull byte[] data, int version) throws IOException;
+
+}
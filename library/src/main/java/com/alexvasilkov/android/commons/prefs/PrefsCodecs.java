@@ -0,0 +1,269 @@
+package com.alexvasilkov.android.commons.prefs;
+
+import android.support.annotation.NonNull;
+
+import com.alexvasilkov.android.commons.utils.GsonHelper;
+import com.google.gson.TypeAdapter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Standard {@link PrefsCodec} implementations. Binary codecs ({@link #stringList()},
+ * {@link #longArray()}) are more compact and faster than JSON or Java serialization.
+ * See also {@link BinaryCodec}.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" }) // Public API
+public class PrefsCodecs {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final PrefsCodec<Serializable> JAVA_SERIALIZATION = new JavaCodec();
+    private static final PrefsCodec<List<String>> STRING_LIST = new StringListBinaryCodec();
+    private static final PrefsCodec<long[]> LONG_ARRAY = new LongArrayBinaryCodec();
+
+    private PrefsCodecs() {}
+
+    /**
+     * Codec using Java serialization.
+     */
+    @NonNull
+    public static PrefsCodec<Serializable> javaSerialization() {
+        return JAVA_SERIALIZATION;
+    }
+
+    /**
+     * Binary codec for list of strings, null elements are supported.
+     * Decoded list is mutable.
+     */
+    @NonNull
+    public static PrefsCodec<List<String>> stringList() {
+        return STRING_LIST;
+    }
+
+    /**
+     * Binary codec for array of longs (e.g. list of ids).
+     */
+    @NonNull
+    public static PrefsCodec<long[]> longArray() {
+        return LONG_ARRAY;
+    }
+
+    /**
+     * Codec storing values as UTF-8 JSON bytes. Gson library should be available in classpath.
+     */
+    @NonNull
+    public static <T> PrefsCodec<T> gson(@NonNull Class<T> clazz) {
+        return new GsonCodec<>(clazz);
+    }
+
+    /**
+     * Codec storing values as UTF-8 JSON bytes. Gson library should be available in classpath.
+     */
+    @NonNull
+    public static <T> PrefsCodec<T> gson(@NonNull Type type) {
+        return new GsonCodec<>(type);
+    }
+
+
+    private static class JavaCodec implements PrefsCodec<Serializable> {
+        @NonNull
+        @Override
+        public String getId() {
+            return "java";
+        }
+
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+
+        @NonNull
+        @Override
+        public byte[] encode(@NonNull Serializable value) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(value);
+            out.close();
+            return bytes.toByteArray();
+        }
+
+        @Override
+        public Serializable decode(@NonNull byte[] data, int version) throws IOException {
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+            try {
+                return (Serializable) in.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Can't deserialize value", e);
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    private static class GsonCodec<T> implements PrefsCodec<T> {
+        private final TypeAdapter<T> adapter;
+
+        GsonCodec(Type type) {
+            adapter = GsonHelper.getAdapter(type);
+        }
+
+        @NonNull
+        @Override
+        public String getId() {
+            return "gson";
+        }
+
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+
+        @NonNull
+        @Override
+        public byte[] encode(@NonNull T value) throws IOException {
+            byte[] bytes = GsonHelper.toJsonBytes(value, adapter);
+            if (bytes == null) {
+                throw new IOException("Can't convert value to JSON");
+            }
+            return bytes;
+        }
+
+        @Override
+        public T decode(@NonNull byte[] data, int version) {
+            return GsonHelper.fromJson(data, adapter);
+        }
+    }
+
+    /**
+     * Writes non-negative integer using 7 bits per byte, highest bit marks that more bytes follow.
+     */
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        writeVarLong(out, value & 0xffffffffL);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        final long value = readVarLong(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Invalid variable length integer");
+        }
+        return (int) value;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0L) {
+            out.writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid variable length integer");
+    }
+
+    /**
+     * Checks length read from the data, to not allocate huge arrays for corrupted data.
+     */
+    private static void checkLength(int length, int max) throws IOException {
+        if (length < 0 || length > max) {
+            throw new IOException("Invalid length: " + length);
+        }
+    }
+
+    /**
+     * Stores elements count followed by UTF-8 bytes of each element prefixed with their length
+     * plus one, or zero for null elements. Count and lengths are written as variable length
+     * integers, so short strings take one extra byte only.
+     */
+    private static class StringListBinaryCodec extends BinaryCodec<List<String>> {
+        StringListBinaryCodec() {
+            super("strings", 1);
+        }
+
+        @Override
+        protected void write(@NonNull List<String> value, @NonNull DataOutputStream out)
+                throws IOException {
+            writeVarInt(out, value.size());
+            for (String item : value) {
+                if (item == null) {
+                    writeVarInt(out, 0);
+                } else {
+                    byte[] bytes = item.getBytes(UTF_8);
+                    writeVarInt(out, bytes.length + 1);
+                    out.write(bytes);
+                }
+            }
+        }
+
+        @Override
+        protected List<String> read(@NonNull DataInputStream in, int version)
+                throws IOException {
+            final int size = readVarInt(in);
+            checkLength(size, in.available());
+            final List<String> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                int length = readVarInt(in) - 1;
+                if (length == -1) {
+                    list.add(null);
+                } else {
+                    checkLength(length, in.available());
+                    byte[] bytes = new byte[length];
+                    in.readFully(bytes);
+                    list.add(new String(bytes, UTF_8));
+                }
+            }
+            return list;
+        }
+    }
+
+    /**
+     * Stores elements count followed by elements, written as zigzag-encoded variable length
+     * integers, so small values (e.g. ids) take one or few bytes each.
+     */
+    private static class LongArrayBinaryCodec extends BinaryCodec<long[]> {
+        LongArrayBinaryCodec() {
+            super("longs", 1);
+        }
+
+        @Override
+        protected void write(@NonNull long[] value, @NonNull DataOutputStream out)
+                throws IOException {
+            writeVarInt(out, value.length);
+            for (long item : value) {
+                writeVarLong(out, (item << 1) ^ (item >> 63));
+            }
+        }
+
+        @Override
+        protected long[] read(@NonNull DataInputStream in, int version) throws IOException {
+            final int size = readVarInt(in);
+            checkLength(size, in.available());
+            final long[] array = new long[size];
+            for (int i = 0; i < array.length; i++) {
+                final long zigzag = readVarLong(in);
+                array[i] = (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+            return array;
+        }
+    }
+
+}
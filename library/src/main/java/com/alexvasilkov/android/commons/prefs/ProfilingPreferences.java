@@ -0,0 +1,548 @@
+package com.alexvasilkov.android.commons.prefs;
+
+import android.content.SharedPreferences;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SharedPreferences} wrapper which measures reads and writes of each key: number of
+ * accesses (including ones from the main thread), time spent and size of values. Can be used
+ * with all {@link PreferencesHelper} methods. Use in debug builds only:
+ * <pre>
+ *   prefs = ProfilingPreferences.wrap(prefs, "settings");
+ * </pre>
+ * Then use {@link #getReport()}, {@link #getReports()} or {@link #dump()} to check the results.
+ * Each {@link Editor#commit()} call on the main thread is also logged as a warning.<br/>
+ * Value size is the number of characters for strings and strings sets, and number of bytes
+ * for other types.<br/>
+ * Note: registered listeners receive the wrapped preferences instance.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" }) // Public API
+public class ProfilingPreferences implements SharedPreferences {
+
+    private static final String TAG = ProfilingPreferences.class.getSimpleName();
+
+    public static final int DEFAULT_LARGE_VALUE_SIZE = 8 * 1024;
+
+    private static final String GET_ALL_KEY = "<getAll>";
+
+    private static final Map<String, ProfilingPreferences> instances = new LinkedHashMap<>();
+
+    private static volatile int largeValueSize = DEFAULT_LARGE_VALUE_SIZE;
+
+    private final SharedPreferences prefs;
+    private final String name;
+
+    // All fields below are guarded by this instance
+    private final Map<String, KeyStats> stats = new HashMap<>();
+    private int commits;
+    private int mainThreadCommits;
+    private long commitsTime;
+    private int applies;
+    private long appliesTime;
+
+    private ProfilingPreferences(@NonNull SharedPreferences prefs, @NonNull String name) {
+        this.prefs = prefs;
+        this.name = name;
+    }
+
+    /**
+     * Returns profiling wrapper for given preferences. Same wrapper is returned for the same
+     * name, unless underlying preferences instance is different.
+     */
+    @NonNull
+    public static ProfilingPreferences wrap(@NonNull SharedPreferences prefs,
+            @NonNull String name) {
+        synchronized (instances) {
+            ProfilingPreferences wrapper = instances.get(name);
+            if (wrapper == null || wrapper.prefs != prefs) {
+                wrapper = new ProfilingPreferences(prefs, name);
+                instances.put(name, wrapper);
+            }
+            return wrapper;
+        }
+    }
+
+    /**
+     * Sets size starting from which values are reported as large.
+     * Default value is {@link #DEFAULT_LARGE_VALUE_SIZE}.
+     */
+    public static void setLargeValueSize(int size) {
+        largeValueSize = size;
+    }
+
+    /**
+     * Returns reports for all wrapped preferences.
+     */
+    @NonNull
+    public static List<Report> getReports() {
+        final List<ProfilingPreferences> list;
+        synchronized (instances) {
+            list = new ArrayList<>(instances.values());
+        }
+        final List<Report> reports = new ArrayList<>(list.size());
+        for (ProfilingPreferences wrapper : list) {
+            reports.add(wrapper.getReport());
+        }
+        return reports;
+    }
+
+    /**
+     * Prints all reports to logcat.
+     */
+    public static void dump() {
+        for (Report report : getReports()) {
+            Log.i(TAG, report.toString());
+        }
+    }
+
+    @NonNull
+    public SharedPreferences getWrapped() {
+        return prefs;
+    }
+
+    @NonNull
+    public synchronized Report getReport() {
+        final List<KeyStats> keys = new ArrayList<>(stats.size());
+        for (KeyStats keyStats : stats.values()) {
+            keys.add(new KeyStats(keyStats));
+        }
+        return new Report(name, keys, commits, mainThreadCommits, commitsTime,
+                applies, appliesTime, largeValueSize);
+    }
+
+    public synchronized void reset() {
+        stats.clear();
+        commits = mainThreadCommits = applies = 0;
+        commitsTime = appliesTime = 0L;
+    }
+
+    @Override
+    public Map<String, ?> getAll() {
+        final long start = System.nanoTime();
+        final Map<String, ?> result = prefs.getAll();
+        onRead(GET_ALL_KEY, 0, start);
+        return result;
+    }
+
+    @Nullable
+    @Override
+    public String getString(String key, @Nullable String defValue) {
+        final long start = System.nanoTime();
+        final String result = prefs.getString(key, defValue);
+        onRead(key, result == null ? 0 : result.length(), start);
+        return result;
+    }
+
+    @Nullable
+    @Override
+    public Set<String> getStringSet(String key, @Nullable Set<String> defValues) {
+        final long start = System.nanoTime();
+        final Set<String> result = prefs.getStringSet(key, defValues);
+        onRead(key, sizeOf(result), start);
+        return result;
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        final long start = System.nanoTime();
+        final int result = prefs.getInt(key, defValue);
+        onRead(key, 4, start);
+        return result;
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+        final long start = System.nanoTime();
+        final long result = prefs.getLong(key, defValue);
+        onRead(key, 8, start);
+        return result;
+    }
+
+    @Override
+    public float getFloat(String key, float defValue) {
+        final long start = System.nanoTime();
+        final float result = prefs.getFloat(key, defValue);
+        onRead(key, 4, start);
+        return result;
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        final long start = System.nanoTime();
+        final boolean result = prefs.getBoolean(key, defValue);
+        onRead(key, 1, start);
+        return result;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        final long start = System.nanoTime();
+        final boolean result = prefs.contains(key);
+        onRead(key, 0, start);
+        return result;
+    }
+
+    @Override
+    public Editor edit() {
+        return new ProfilingEditor(prefs.edit());
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(
+            OnSharedPreferenceChangeListener listener) {
+        prefs.registerOnSharedPreferenceChangeListener(listener);
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(
+            OnSharedPreferenceChangeListener listener) {
+        prefs.unregisterOnSharedPreferenceChangeListener(listener);
+    }
+
+    private void onRead(String key, int size, long start) {
+        final long time = System.nanoTime() - start;
+        final boolean mainThread = isMainThread();
+        synchronized (this) {
+            KeyStats keyStats = getStats(key);
+            keyStats.reads++;
+            if (mainThread) {
+                keyStats.mainThreadReads++;
+            }
+            keyStats.readsTime += time;
+            keyStats.onSize(size);
+        }
+    }
+
+    private synchronized void onWrite(String key, int size) {
+        final boolean mainThread = isMainThread();
+        KeyStats keyStats = getStats(key);
+        keyStats.writes++;
+        if (mainThread) {
+            keyStats.mainThreadWrites++;
+        }
+        keyStats.onSize(size);
+    }
+
+    private void onCommit(long start) {
+        final long time = System.nanoTime() - start;
+        final boolean mainThread = isMainThread();
+        synchronized (this) {
+            commits++;
+            commitsTime += time;
+            if (mainThread) {
+                mainThreadCommits++;
+            }
+        }
+        if (mainThread) {
+            Log.w(TAG, "commit() of '" + name + "' on main thread took "
+                    + TimeUnit.NANOSECONDS.toMicros(time) + "us");
+        }
+    }
+
+    private synchronized void onApply(long start) {
+        applies++;
+        appliesTime += System.nanoTime() - start;
+    }
+
+    private KeyStats getStats(String key) {
+        KeyStats keyStats = stats.get(key);
+        if (keyStats == null) {
+            keyStats = new KeyStats(key);
+            stats.put(key, keyStats);
+        }
+        return keyStats;
+    }
+
+    private static int sizeOf(@Nullable Set<String> set) {
+        int size = 0;
+        if (set != null) {
+            for (String str : set) {
+                size += str == null ? 0 : str.length();
+            }
+        }
+        return size;
+    }
+
+    private static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+
+    private class ProfilingEditor implements Editor {
+        private final Editor editor;
+
+        ProfilingEditor(Editor editor) {
+            this.editor = editor;
+        }
+
+        @Override
+        public Editor putString(String key, @Nullable String value) {
+            onWrite(key, value == null ? 0 : value.length());
+            editor.putString(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putStringSet(String key, @Nullable Set<String> values) {
+            onWrite(key, sizeOf(values));
+            editor.putStringSet(key, values);
+            return this;
+        }
+
+        @Override
+        public Editor putInt(String key, int value) {
+            onWrite(key, 4);
+            editor.putInt(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putLong(String key, long value) {
+            onWrite(key, 8);
+            editor.putLong(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putFloat(String key, float value) {
+            onWrite(key, 4);
+            editor.putFloat(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            onWrite(key, 1);
+            editor.putBoolean(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor remove(String key) {
+            onWrite(key, 0);
+            editor.remove(key);
+            return this;
+        }
+
+        @Override
+        public Editor clear() {
+            editor.clear();
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            final long start = System.nanoTime();
+            final boolean result = editor.commit();
+            onCommit(start);
+            return result;
+        }
+
+        @Override
+        public void apply() {
+            final long start = System.nanoTime();
+            editor.apply();
+            onApply(start);
+        }
+    }
+
+
+    /**
+     * Access statistics of a single key.
+     */
+    public static class KeyStats {
+        private final String key;
+        private int reads;
+        private int mainThreadReads;
+        private long readsTime;
+        private int writes;
+        private int mainThreadWrites;
+        private int lastSize;
+        private int maxSize;
+
+        KeyStats(String key) {
+            this.key = key;
+        }
+
+        KeyStats(KeyStats stats) {
+            this.key = stats.key;
+            this.reads = stats.reads;
+            this.mainThreadReads = stats.mainThreadReads;
+            this.readsTime = stats.readsTime;
+            this.writes = stats.writes;
+            this.mainThreadWrites = stats.mainThreadWrites;
+            this.lastSize = stats.lastSize;
+            this.maxSize = stats.maxSize;
+        }
+
+        void onSize(int size) {
+            lastSize = size;
+            maxSize = Math.max(maxSize, size);
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public int getReads() {
+            return reads;
+        }
+
+        public int getMainThreadReads() {
+            return mainThreadReads;
+        }
+
+        /**
+         * Total time spent reading the key, in microseconds.
+         */
+        public long getReadsTime() {
+            return TimeUnit.NANOSECONDS.toMicros(readsTime);
+        }
+
+        public int getWrites() {
+            return writes;
+        }
+
+        public int getMainThreadWrites() {
+            return mainThreadWrites;
+        }
+
+        public int getLastSize() {
+            return lastSize;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        @Override
+        public String toString() {
+            return key + ": reads=" + reads + " (main=" + mainThreadReads + ", "
+                    + getReadsTime() + "us), writes=" + writes + " (main=" + mainThreadWrites
+                    + "), size=" + lastSize + " (max=" + maxSize + ")";
+        }
+    }
+
+    /**
+     * Access statistics of a single preferences file.
+     */
+    public static class Report {
+        private final String name;
+        private final List<KeyStats> keys;
+        private final List<KeyStats> largeValues;
+        private final int commits;
+        private final int mainThreadCommits;
+        private final long commitsTime;
+        private final int applies;
+        private final long appliesTime;
+
+        Report(String name, List<KeyStats> keys, int commits, int mainThreadCommits,
+                long commitsTime, int applies, long appliesTime, int largeValueSize) {
+            Collections.sort(keys, new Comparator<KeyStats>() {
+                @Override
+                public int compare(KeyStats s1, KeyStats s2) {
+                    int count1 = s1.reads + s1.writes;
+                    int count2 = s2.reads + s2.writes;
+                    return count1 < count2 ? 1 : (count1 == count2 ? 0 : -1);
+                }
+            });
+
+            final List<KeyStats> largeValues = new ArrayList<>();
+            for (KeyStats stats : keys) {
+                if (stats.maxSize >= largeValueSize) {
+                    largeValues.add(stats);
+                }
+            }
+
+            this.name = name;
+            this.keys = Collections.unmodifiableList(keys);
+            this.largeValues = Collections.unmodifiableList(largeValues);
+            this.commits = commits;
+            this.mainThreadCommits = mainThreadCommits;
+            this.commitsTime = commitsTime;
+            this.applies = applies;
+            this.appliesTime = appliesTime;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Statistics of all accessed keys, most accessed keys first.
+         */
+        @NonNull
+        public List<KeyStats> getKeys() {
+            return keys;
+        }
+
+        /**
+         * Statistics of keys which values are larger than configured threshold,
+         * see {@link #setLargeValueSize(int)}.
+         */
+        @NonNull
+        public List<KeyStats> getLargeValues() {
+            return largeValues;
+        }
+
+        public int getCommits() {
+            return commits;
+        }
+
+        public int getMainThreadCommits() {
+            return mainThreadCommits;
+        }
+
+        /**
+         * Total time spent in {@link Editor#commit()} calls, in microseconds.
+         */
+        public long getCommitsTime() {
+            return TimeUnit.NANOSECONDS.toMicros(commitsTime);
+        }
+
+        public int getApplies() {
+            return applies;
+        }
+
+        /**
+         * Total time spent in {@link Editor#apply()} calls, in microseconds.
+         */
+        public long getAppliesTime() {
+            return TimeUnit.NANOSECONDS.toMicros(appliesTime);
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder str = new StringBuilder();
+            str.append(name).append(": commits=").append(commits)
+                    .append(" (main=").append(mainThreadCommits).append(", ")
+                    .append(getCommitsTime()).append("us), applies=").append(applies)
+                    .append(" (").append(getAppliesTime()).append("us)");
+            if (!largeValues.isEmpty()) {
+                str.append("\n  Large values:");
+                for (KeyStats stats : largeValues) {
+                    str.append("\n    ").append(stats);
+                }
+            }
+            str.append("\n  Keys:");
+            for (KeyStats stats : keys) {
+                str.append("\n    ").append(stats);
+            }
+            return str.toString();
+        }
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.alexvasilkov.android.commons.prefs;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Encodes strings list into single string as {@link #HEADER} followed by
+ * {@code <length>:<chars>} for each element ({@code -1:} for null elements), so elements can
+ * contain any characters.<br/>
+ * Header only contains printable characters, so that it can be safely stored in XML
+ * preferences file. Legacy delimited value can start with the same characters, such value is
+ * only treated as encoded if the rest of it is in valid format too, see {@link #tryDecode(String)}.
+ * <br/>
+ * Decoding is a single linear scan which only finds elements bounds, elements are extracted
+ * once they are accessed.
+ */
+final class StringListCodec {
+
+    static final String HEADER = "~L~";
+
+    private StringListCodec() {}
+
+    private static boolean isEncoded(@Nullable String value) {
+        return value != null && value.startsWith(HEADER);
+    }
+
+    @NonNull
+    static String encode(@NonNull Collection<String> values) {
+        int capacity = HEADER.length();
+        for (String value : values) {
+            capacity += 3 + (value == null ? 0 : value.length());
+        }
+
+        final StringBuilder str = new StringBuilder(capacity);
+        str.append(HEADER);
+        for (String value : values) {
+            if (value == null) {
+                str.append("-1:");
+            } else {
+                str.append(value.length()).append(':').append(value);
+            }
+        }
+        return str.toString();
+    }
+
+    /**
+     * Decodes string created with {@link #encode(Collection)}.
+     *
+     * @throws IllegalArgumentException If string has invalid format
+     */
+    @NonNull
+    static List<String> decode(@NonNull String encoded) {
+        return new LazyList(encoded);
+    }
+
+    /**
+     * Decodes given string if it was created with {@link #encode(Collection)}, returns null if
+     * string has no header or has invalid format (e.g. it is a legacy value which just happens
+     * to start with the header).
+     */
+    @Nullable
+    static List<String> tryDecode(@Nullable String value) {
+        if (!isEncoded(value)) {
+            return null;
+        }
+        try {
+            return decode(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Splits string by given delimiter, as a plain string and not as a regex. Used for values
+     * stored in legacy format.
+     */
+    @NonNull
+    static List<String> splitLegacy(@NonNull String value, @NonNull String delimiter) {
+        if (delimiter.isEmpty()) {
+            return new ArrayList<>(Arrays.asList(value));
+        }
+        final List<String> list = new ArrayList<>();
+        int start = 0;
+        int end;
+        while ((end = value.indexOf(delimiter, start)) != -1) {
+            list.add(value.substring(start, end));
+            start = end + delimiter.length();
+        }
+        list.add(value.substring(start));
+        return list;
+    }
+
+
+    private static class LazyList extends AbstractList<String> implements RandomAccess {
+        private final String encoded;
+        private int[] starts = new int[8];
+        private int[] lengths = new int[8];
+        private int size;
+
+        LazyList(String encoded) {
+            if (!isEncoded(encoded)) {
+                throw new IllegalArgumentException("Missing header");
+            }
+            this.encoded = encoded;
+
+            final int total = encoded.length();
+            int pos = HEADER.length();
+            while (pos < total) {
+                // Reading element length
+                boolean negative = false;
+                if (encoded.charAt(pos) == '-') {
+                    negative = true;
+                    pos++;
+                }
+                int length = 0;
+                int digits = 0;
+                char c;
+                while (pos < total && (c = encoded.charAt(pos)) != ':') {
+                    if (c < '0' || c > '9' || digits == 9) {
+                        throw new IllegalArgumentException("Invalid length at " + pos);
+                    }
+                    length = length * 10 + (c - '0');
+                    digits++;
+                    pos++;
+                }
+                if (pos == total || digits == 0 || (negative && length != 1)) {
+                    throw new IllegalArgumentException("Invalid length at " + pos);
+                }
+                pos++; // Skipping ':'
+
+                if (negative) {
+                    add(pos, -1);
+                } else {
+                    if (pos + length > total) {
+                        throw new IllegalArgumentException("Element is truncated at " + pos);
+                    }
+                    add(pos, length);
+                    pos += length;
+                }
+            }
+        }
+
+        private void add(int start, int length) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+            }
+            starts[size] = start;
+            lengths[size] = length;
+            size++;
+        }
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+            }
+            final int length = lengths[index];
+            return length == -1
+                    ? null : encoded.substring(starts[index], starts[index] + length);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+}
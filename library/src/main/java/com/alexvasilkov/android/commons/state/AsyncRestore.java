@@ -0,0 +1,175 @@
+package com.alexvasilkov.android.commons.state;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Decodes values of {@link FieldAccessor.Deferrable} fields on background thread and assigns
+ * them to the object on main thread.<br/>
+ * If state of the object is saved before pending restore is finished then saving thread waits
+ * for decoding to finish and applies the values immediately, so no state is lost.<br/>
+ * Decoded value is only assigned if the field still holds the value it had when restore was
+ * started, so values assigned by the object itself in the meantime are not overwritten.
+ */
+final class AsyncRestore implements Runnable {
+
+    private static final String TAG = AsyncRestore.class.getSimpleName();
+
+    private static final Map<Object, AsyncRestore> pending = new WeakHashMap<>();
+
+    private static Handler mainHandler;
+    private static Executor executor;
+
+    private final Object obj;
+    private final FieldAccessor[] accessors;
+    private final Object[] values;
+    private final Object[] initial;
+    private final RestoreCallback<Object> callback;
+    private final CountDownLatch decoded = new CountDownLatch(1);
+    private boolean applied;
+
+    /**
+     * @param stored Data read from the Bundle for each of the accessors, see
+     * {@link FieldAccessor.Deferrable#read(android.os.Bundle)}
+     */
+    AsyncRestore(@NonNull Object obj, @NonNull FieldAccessor[] accessors,
+            @NonNull Object[] stored, @Nullable RestoreCallback<Object> callback) {
+        this.obj = obj;
+        this.accessors = accessors;
+        this.values = stored;
+        this.callback = callback;
+
+        this.initial = new Object[accessors.length];
+        try {
+            for (int i = 0; i < accessors.length; i++) {
+                initial[i] = accessors[i].field.get(obj);
+            }
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Can't access field value", e);
+        }
+    }
+
+    static synchronized void setExecutor(@NonNull Executor executor) {
+        AsyncRestore.executor = executor;
+    }
+
+    private static synchronized Executor getExecutor() {
+        if (executor == null) {
+            ExecutorService service = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    return new Thread(runnable, TAG);
+                }
+            });
+            executor = service;
+        }
+        return executor;
+    }
+
+    private static synchronized Handler getMainHandler() {
+        if (mainHandler == null) {
+            mainHandler = new Handler(Looper.getMainLooper());
+        }
+        return mainHandler;
+    }
+
+    /**
+     * Finishes pending restore of the given object, if any, blocking until values are decoded.
+     */
+    static void finishPending(@NonNull Object obj) {
+        final AsyncRestore restore;
+        synchronized (pending) {
+            restore = pending.get(obj);
+        }
+        if (restore != null) {
+            restore.awaitDecoded();
+            restore.apply();
+        }
+    }
+
+    void start() {
+        synchronized (pending) {
+            pending.put(obj, this);
+        }
+        getExecutor().execute(this);
+    }
+
+    @Override
+    public void run() {
+        for (int i = 0; i < accessors.length; i++) {
+            try {
+                values[i] = ((FieldAccessor.Deferrable) accessors[i]).decodeStored(values[i]);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Can't decode field value: " + accessors[i].field.getName(), e);
+                values[i] = null;
+            }
+        }
+        decoded.countDown();
+
+        getMainHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                apply();
+            }
+        });
+    }
+
+    private void awaitDecoded() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                decoded.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void apply() {
+        synchronized (this) {
+            if (applied) {
+                return;
+            }
+            applied = true;
+        }
+
+        synchronized (pending) {
+            if (pending.get(obj) == this) {
+                pending.remove(obj);
+            }
+        }
+
+        try {
+            for (int i = 0; i < accessors.length; i++) {
+                if (accessors[i].field.get(obj) == initial[i]) {
+                    accessors[i].field.set(obj, values[i]);
+                } else {
+                    Log.w(TAG, "Field was assigned before its value was restored, keeping it: "
+                            + accessors[i].field.getName());
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Can't set field value", e);
+        }
+
+        if (callback != null) {
+            callback.onStateRestored(obj);
+        }
+    }
+
+}
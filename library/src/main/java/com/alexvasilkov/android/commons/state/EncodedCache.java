@@ -0,0 +1,97 @@
+package com.alexvasilkov.android.commons.state;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps last encoded form of Gson and Serializable field values for each object, so that
+ * unchanged values are not encoded again on subsequent saves.
+ * See {@link InstanceStateManager#setIncrementalSaves(boolean)}.<br/>
+ * Only values which are known to be immutable are cached (see {@link #isCacheable(Object)}), such
+ * value is considered unchanged if field still references the same instance.
+ */
+final class EncodedCache {
+
+    private static final Map<Object, Map<String, Entry>> cache = new WeakHashMap<>();
+
+    private static volatile boolean enabled;
+
+    private EncodedCache() {}
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    static void setEnabled(boolean enabled) {
+        EncodedCache.enabled = enabled;
+        if (!enabled) {
+            synchronized (cache) {
+                cache.clear();
+            }
+        }
+    }
+
+    /**
+     * Whether encoded form of the value can be reused while field references the same instance.
+     * Objects modified in place can't be detected reliably (e.g. hash code of a class without
+     * own {@code hashCode()} never changes), so only strings, boxed primitives, enums and
+     * {@link ImmutableState} instances are cached.
+     */
+    static boolean isCacheable(@NonNull Object value) {
+        return value instanceof String || value instanceof Number || value instanceof Boolean
+                || value instanceof Character || value instanceof Enum
+                || value instanceof ImmutableState;
+    }
+
+    /**
+     * Returns previously encoded form of the value, or null if value was changed since then or
+     * it is not cacheable.
+     */
+    @Nullable
+    static Object get(@NonNull Object obj, @NonNull String key, @NonNull Object value) {
+        if (!isCacheable(value)) {
+            return null;
+        }
+        synchronized (cache) {
+            Map<String, Entry> entries = cache.get(obj);
+            Entry entry = entries == null ? null : entries.get(key);
+            return entry != null && entry.value.get() == value ? entry.encoded : null;
+        }
+    }
+
+    /**
+     * Stores encoded form of the value, if value is cacheable.
+     */
+    static void put(@NonNull Object obj, @NonNull String key, @NonNull Object value,
+            @NonNull Object encoded) {
+        if (!isCacheable(value)) {
+            return;
+        }
+        synchronized (cache) {
+            Map<String, Entry> entries = cache.get(obj);
+            if (entries == null) {
+                entries = new HashMap<>();
+                cache.put(obj, entries);
+            }
+            entries.put(key, new Entry(value, encoded));
+        }
+    }
+
+
+    private static class Entry {
+        // Value is referenced weakly since it may reference the object itself
+        final WeakReference<Object> value;
+        final Object encoded;
+
+        Entry(Object value, Object encoded) {
+            this.value = new WeakReference<>(value);
+            this.encoded = encoded;
+        }
+    }
+
+}
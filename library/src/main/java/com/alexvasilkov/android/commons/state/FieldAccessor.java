@@ -0,0 +1,76 @@
+package com.alexvasilkov.android.commons.state;
+
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+
+/**
+ * Saves and restores single annotated field using reflection. Specific implementation is chosen
+ * once per field (see {@link FieldAccessors#create(Field, String, boolean, boolean)}), so no type
+ * checks are needed during save / restore.
+ */
+abstract class FieldAccessor {
+
+    final Field field;
+    final String key;
+
+    FieldAccessor(@NonNull Field field, @NonNull String key) {
+        this.field = field;
+        this.key = key;
+    }
+
+    abstract void save(@NonNull Object obj, @NonNull Bundle bundle)
+            throws IllegalAccessException;
+
+    abstract void restore(@NonNull Object obj, @NonNull Bundle bundle)
+            throws IllegalAccessException;
+
+
+    /**
+     * Implemented by accessors of primitive and primitive array fields, which can be written
+     * into single packed entry, see {@link InstanceStateManager#setPackedPrimitives(boolean)}.
+     */
+    interface Packable {
+        int packedSize(@NonNull Object obj) throws IllegalAccessException;
+
+        void pack(@NonNull Object obj, @NonNull ByteBuffer out) throws IllegalAccessException;
+
+        void unpack(@NonNull Object obj, @NonNull ByteBuffer in) throws IllegalAccessException;
+    }
+
+    /**
+     * Implemented by accessors which can convert field values into bytes and back,
+     * used to offload large values into files, see {@link OffloadStore}.
+     */
+    interface Encodable {
+        @Nullable
+        byte[] encode(@NonNull Object value);
+
+        @Nullable
+        Object decode(@NonNull ByteBuffer bytes);
+    }
+
+    /**
+     * Implemented by accessors of values which are expensive to decode, so that decoding can be
+     * moved to background thread, see {@link AsyncRestore}.
+     */
+    interface Deferrable {
+        /**
+         * Reads stored data from the Bundle, should be called on the same thread which owns the
+         * Bundle. Extra keys used by the accessor (except {@link FieldAccessor#key}) are removed.
+         */
+        @Nullable
+        Object read(@NonNull Bundle bundle);
+
+        /**
+         * Converts data returned by {@link #read(Bundle)} into field value,
+         * can be called on any thread.
+         */
+        @Nullable
+        Object decodeStored(@Nullable Object stored);
+    }
+
+}
@@ -0,0 +1,1618 @@
+package com.alexvasilkov.android.commons.state;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Parcelable;
+import android.support.annotation.NonNull;
+import android.support.v4.util.LongSparseArray;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseIntArray;
+
+import com.alexvasilkov.android.commons.utils.GsonHelper;
+import com.google.gson.TypeAdapter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Factory and implementations of {@link FieldAccessor} for all supported field types.
+ */
+final class FieldAccessors {
+
+    private static final String TAG = FieldAccessors.class.getSimpleName();
+
+    // Suffix of the key used to store serialized bytes, can't clash with field name
+    static final String SERIALIZED_SUFFIX = "#bytes";
+
+    private FieldAccessors() {}
+
+    /**
+     * Resolves field's type into corresponding accessor.
+     */
+    @NonNull
+    static FieldAccessor create(@NonNull Field field, @NonNull String key, boolean isGson,
+            boolean offload) {
+        FieldAccessor accessor = create(field, key, isGson);
+
+        if (offload) {
+            if (!(accessor instanceof FieldAccessor.Encodable)) {
+                throw new RuntimeException("Offload is not supported for field: "
+                        + field.getName() + ", " + field.getType().getName());
+            }
+            return new OffloadAccessor(field, key, (FieldAccessor.Encodable) accessor);
+        }
+
+        return accessor;
+    }
+
+    @NonNull
+    private static FieldAccessor create(@NonNull Field field, @NonNull String key,
+            boolean isGson) {
+        if (isGson) {
+            return new GsonAccessor(field, key);
+        }
+
+        Class<?> type = field.getType();
+        Type[] genericTypes = null;
+        if (field.getGenericType() instanceof ParameterizedType) {
+            genericTypes = ((ParameterizedType) field.getGenericType()).getActualTypeArguments();
+        }
+
+        if (type.equals(Boolean.TYPE)) {
+            return new BooleanAccessor(field, key);
+
+        } else if (type.equals(boolean[].class)) {
+            return new BooleanArrayAccessor(field, key);
+
+        } else if (type.equals(Bundle.class)) {
+            return new BundleAccessor(field, key);
+
+        } else if (type.equals(Byte.TYPE)) {
+            return new ByteAccessor(field, key);
+
+        } else if (type.equals(byte[].class)) {
+            return new ByteArrayAccessor(field, key);
+
+        } else if (type.equals(Character.TYPE)) {
+            return new CharAccessor(field, key);
+
+        } else if (type.equals(char[].class)) {
+            return new CharArrayAccessor(field, key);
+
+        } else if (type.equals(CharSequence.class)) {
+            return new CharSequenceAccessor(field, key);
+
+        } else if (type.equals(CharSequence[].class)) {
+            return new CharSequenceArrayAccessor(field, key);
+
+        } else if (type.equals(Double.TYPE)) {
+            return new DoubleAccessor(field, key);
+
+        } else if (type.equals(double[].class)) {
+            return new DoubleArrayAccessor(field, key);
+
+        } else if (type.equals(Float.TYPE)) {
+            return new FloatAccessor(field, key);
+
+        } else if (type.equals(float[].class)) {
+            return new FloatArrayAccessor(field, key);
+
+        } else if (type.equals(Integer.TYPE)) {
+            return new IntAccessor(field, key);
+
+        } else if (type.equals(int[].class)) {
+            return new IntArrayAccessor(field, key);
+
+        } else if (type.equals(Long.TYPE)) {
+            return new LongAccessor(field, key);
+
+        } else if (type.equals(long[].class)) {
+            return new LongArrayAccessor(field, key);
+
+        } else if (type.equals(Short.TYPE)) {
+            return new ShortAccessor(field, key);
+
+        } else if (type.equals(short[].class)) {
+            return new ShortArrayAccessor(field, key);
+
+        } else if (type.equals(String.class)) {
+            return new StringAccessor(field, key);
+
+        } else if (type.equals(String[].class)) {
+            return new StringArrayAccessor(field, key);
+
+        } else if (Parcelable.class.isAssignableFrom(type)) {
+            return new ParcelableAccessor(field, key);
+
+        } else if (type.equals(ArrayList.class) && isArgument(genericTypes, Parcelable.class)) {
+            return new ParcelableArrayListAccessor(field, key);
+
+        } else if (type.equals(ArrayList.class) && Integer.class.equals(argument(genericTypes))) {
+            return new IntegerArrayListAccessor(field, key);
+
+        } else if (type.equals(ArrayList.class) && Long.class.equals(argument(genericTypes))) {
+            return new LongArrayListAccessor(field, key);
+
+        } else if (type.equals(SparseArray.class)) {
+            checkParcelableValues(field, genericTypes);
+            return new SparseParcelableArrayAccessor(field, key);
+
+        } else if (type.equals(SparseIntArray.class)) {
+            return new SparseIntArrayAccessor(field, key);
+
+        } else if (type.equals(SparseBooleanArray.class)) {
+            return new SparseBooleanArrayAccessor(field, key);
+
+        } else if (type.equals(LongSparseArray.class)) {
+            checkParcelableValues(field, genericTypes);
+            return new LongSparseArrayAccessor(field, key);
+
+        } else if (Build.VERSION.SDK_INT >= 16 && type.equals(android.util.LongSparseArray.class)) {
+            checkParcelableValues(field, genericTypes);
+            return new FrameworkLongSparseArrayAccessor(field, key);
+
+        } else if (type.isArray() && Parcelable.class.isAssignableFrom(type.getComponentType())) {
+            return new ParcelableArrayAccessor(field, key);
+
+        } else if (Serializable.class.isAssignableFrom(type)) {
+            return new SerializableAccessor(field, key);
+
+        } else {
+            throw new RuntimeException("Unsupported field type: " + field.getName()
+                    + ", " + type.getName());
+        }
+    }
+
+    private static Type argument(Type[] genericTypes) {
+        return genericTypes == null || genericTypes.length != 1 ? null : genericTypes[0];
+    }
+
+    private static boolean isArgument(Type[] genericTypes, Class<?> base) {
+        Type argument = argument(genericTypes);
+        return argument instanceof Class && base.isAssignableFrom((Class<?>) argument);
+    }
+
+    /**
+     * Sparse arrays are stored as arrays of Parcelable values, so unsupported value type should
+     * be reported when the field is resolved rather than when its value is saved.
+     */
+    private static void checkParcelableValues(Field field, Type[] genericTypes) {
+        if (!isArgument(genericTypes, Parcelable.class)) {
+            throw new RuntimeException("Unsupported field type: " + field.getName()
+                    + ", " + field.getGenericType() + ", only Parcelable values are supported");
+        }
+    }
+
+
+    private static class BooleanAccessor extends FieldAccessor
+            implements FieldAccessor.Packable {
+        BooleanAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void save(@NonNull Object obj, @NonNull Bundle bundle) throws IllegalAccessException {
+            bundle.putBoolean(key, field.getBoolean(obj));
+        }
+
+        @Override
+        void restore(@NonNull Object obj, @NonNull Bundle bundle) throws IllegalAccessException {
+            field.setBoolean(obj, bundle.getBoolean(key));
+        }
+
+        @Override
+        public int packedSize(@NonNull Object obj) {
+            return 1;
+        }
+
+        @Override
+        public void pack(@NonNull Object obj, @NonNull ByteBuffer out)
+                throws IllegalAccessException {
+            out.put((byte) (field.getBoolean(obj) ? 1 : 0));
+        }
+
+        @Override
+        public void unpack(@NonNull Object obj, @NonNull ByteBuffer in)
+                throws IllegalAccessException {
+            field.setBoolean(obj, in.get() != 0);
+        }
+    }
+
+    private static class ByteAccessor extends FieldAccessor
+            implements FieldAccessor.Packable {
+        ByteAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void save(@NonNull Object obj, @NonNull Bundle bundle) throws IllegalAccessException {
+            bundle.putByte(key, field.getByte(obj));
+        }
+
+        @Override
+        void restore(@NonNull Object obj, @NonNull Bundle bundle) throws IllegalAccessException {
+            field.setByte(obj, bundle.getByte(key));
+        }
+
+        @Override
+        public int packedSize(@NonNull Object obj) {
+            return 1;
+        }
+
+        @Override
+        public void pack(@NonNull Object obj, @NonNull ByteBuffer out)
+                throws IllegalAccessException {
+            out.put(field.getByte(obj));
+        }
+
+        @Override
+        public void unpack(@NonNull Object obj, @NonNull ByteBuffer in)
+                throws IllegalAccessException {
+            field.setByte(obj, in.get());
+        }
+    }
+
+    private static class CharAccessor extends FieldAccessor
+            implements FieldAccessor.Packable {
+        CharAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void save(@NonNull Object obj, @NonNull Bundle bundle) throws IllegalAccessException {
+            bundle.putChar(key, field.getChar(obj));
+        }
+
+        @Override
+        void restore(@NonNull Object obj, @NonNull Bundle bundle) throws IllegalAccessException {
+            field.setChar(obj, bundle.getChar(key));
+        }
+
+        @Override
+        public int packedSize(@NonNull Object obj) {
+            return 2;
+        }
+
+        @Override
+        public void pack(@NonNull Object obj, @NonNull ByteBuffer out)
+                throws IllegalAccessException {
+            out.putChar(field.getChar(obj));
+        }
+
+        @Override
+        public void unpack(@NonNull Object obj, @NonNull ByteBuffer in)
+                throws IllegalAccessException {
+            field.setChar(obj, in.getChar());
+        }
+    }
+
+    private static class DoubleAccessor extends FieldAccessor
+            implements FieldAccessor.Packable {
+        DoubleAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void save(@NonNull Object obj, @NonNull Bundle bundle) throws IllegalAccessException {
+            bundle.putDouble(key, field.getDouble(obj));
+        }
+
+        @Override
+        void restore(@NonNull Object obj, @NonNull Bundle bundle) throws IllegalAccessException {
+            field.setDouble(obj, bundle.getDouble(key));
+        }
+
+        @Override
+        public int packedSize(@NonNull Object obj) {
+            return 8;
+        }
+
+        @Override
+        public void pack(@NonNull Object obj, @NonNull ByteBuffer out)
+                throws IllegalAccessException {
+            out.putDouble(field.getDouble(obj));
+        }
+
+        @Override
+        public void unpack(@NonNull Object obj, @NonNull ByteBuffer in)
+                throws IllegalAccessException {
+            field.setDouble(obj, in.getDouble());
+        }
+    }
+
+    private static class FloatAccessor extends FieldAccessor
+            implements FieldAccessor.Packable {
+        FloatAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void save(@NonNull Object obj, @NonNull Bundle bundle) throws IllegalAccessException {
+            bundle.putFloat(key, field.getFloat(obj));
+        }
+
+        @Override
+        void restore(@NonNull Object obj, @NonNull Bundle bundle) throws IllegalAccessException {
+            field.setFloat(obj, bundle.getFloat(key));
+        }
+
+        @Override
+        public int packedSize(@NonNull Object obj) {
+            return 4;
+        }
+
+        @Override
+        public void pack(@NonNull Object obj, @NonNull ByteBuffer out)
+                throws IllegalAccessException {
+            out.putFloat(field.getFloat(obj));
+        }
+
+        @Override
+        public void unpack(@NonNull Object obj, @NonNull ByteBuffer in)
+                throws IllegalAccessException {
+            field.setFloat(obj, in.getFloat());
+        }
+    }
+
+    private static class IntAccessor extends FieldAccessor
+            implements FieldAccessor.Packable {
+        IntAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void save(@NonNull Object obj, @NonNull Bundle bundle) throws IllegalAccessException {
+            bundle.putInt(key, field.getInt(obj));
+        }
+
+        @Override
+        void restore(@NonNull Object obj, @NonNull Bundle bundle) throws IllegalAccessException {
+            field.setInt(obj, bundle.getInt(key));
+        }
+
+        @Override
+        public int packedSize(@NonNull Object obj) {
+            return 4;
+        }
+
+        @Override
+        public void pack(@NonNull Object obj, @NonNull ByteBuffer out)
+                throws IllegalAccessException {
+            out.putInt(field.getInt(obj));
+        }
+
+        @Override
+        public void unpack(@NonNull Object obj, @NonNull ByteBuffer in)
+                throws IllegalAccessException {
+            field.setInt(obj, in.getInt());
+        }
+    }
+
+    private static class LongAccessor extends FieldAccessor
+            implements FieldAccessor.Packable {
+        LongAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void save(@NonNull Object obj, @NonNull Bundle bundle) throws IllegalAccessException {
+            bundle.putLong(key, field.getLong(obj));
+        }
+
+        @Override
+        void restore(@NonNull Object obj, @NonNull Bundle bundle) throws IllegalAccessException {
+            field.setLong(obj, bundle.getLong(key));
+        }
+
+        @Override
+        public int packedSize(@NonNull Object obj) {
+            return 8;
+        }
+
+        @Override
+        public void pack(@NonNull Object obj, @NonNull ByteBuffer out)
+                throws IllegalAccessException {
+            out.putLong(field.getLong(obj));
+        }
+
+        @Override
+        public void unpack(@NonNull Object obj, @NonNull ByteBuffer in)
+                throws IllegalAccessException {
+            field.setLong(obj, in.getLong());
+        }
+    }
+
+    private static class ShortAccessor extends FieldAccessor
+            implements FieldAccessor.Packable {
+        ShortAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void save(@NonNull Object obj, @NonNull Bundle bundle) throws IllegalAccessException {
+            bundle.putShort(key, field.getShort(obj));
+        }
+
+        @Override
+        void restore(@NonNull Object obj, @NonNull Bundle bundle) throws IllegalAccessException {
+            field.setShort(obj, bundle.getShort(key));
+        }
+
+        @Override
+        public int packedSize(@NonNull Object obj) {
+            return 2;
+        }
+
+        @Override
+        public void pack(@NonNull Object obj, @NonNull ByteBuffer out)
+                throws IllegalAccessException {
+            out.putShort(field.getShort(obj));
+        }
+
+        @Override
+        public void unpack(@NonNull Object obj, @NonNull ByteBuffer in)
+                throws IllegalAccessException {
+            field.setShort(obj, in.getShort());
+        }
+    }
+
+    /**
+     * Encodes value reusing previously encoded bytes if value is immutable and not changed and
+     * incremental mode is enabled, see {@link EncodedCache}.
+     */
+    private static byte[] encodeCached(@NonNull FieldAccessor.Encodable codec,
+            @NonNull Object obj, @NonNull String key, @NonNull Object value) {
+        if (!EncodedCache.isEnabled()) {
+            return codec.encode(value);
+        }
+
+        byte[] bytes = (byte[]) EncodedCache.get(obj, key, value);
+        if (bytes == null) {
+            bytes = codec.encode(value);
+            if (bytes != null) {
+                EncodedCache.put(obj, key, value, bytes);
+            }
+        }
+        return bytes;
+    }
+
+    static byte[] serialize(@NonNull Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(value);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    static Object deserialize(@NonNull ByteBuffer bytes)
+            throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteBufferInputStream(bytes));
+        Object value = in.readObject();
+        in.close();
+        return value;
+    }
+
+    /**
+     * Base accessor for all reference types.
+     */
+    private abstract static class ObjectAccessor extends FieldAccessor {
+        ObjectAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void save(@NonNull Object obj, @NonNull Bundle bundle)
+                throws IllegalAccessException {
+            put(bundle, field.get(obj));
+        }
+
+        @Override
+        void restore(@NonNull Object obj, @NonNull Bundle bundle)
+                throws IllegalAccessException {
+            field.set(obj, get(bundle));
+        }
+
+        abstract void put(@NonNull Bundle bundle, Object value);
+
+        abstract Object get(@NonNull Bundle bundle);
+    }
+
+    private static class BooleanArrayAccessor extends ObjectAccessor
+            implements FieldAccessor.Packable {
+        BooleanArrayAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void put(@NonNull Bundle bundle, Object value) {
+            bundle.putBooleanArray(key, (boolean[]) value);
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            return bundle.getBooleanArray(key);
+        }
+
+        @Override
+        public int packedSize(@NonNull Object obj) throws IllegalAccessException {
+            boolean[] array = (boolean[]) field.get(obj);
+            return 4 + (array == null ? 0 : array.length);
+        }
+
+        @Override
+        public void pack(@NonNull Object obj, @NonNull ByteBuffer out)
+                throws IllegalAccessException {
+            boolean[] array = (boolean[]) field.get(obj);
+            if (array == null) {
+                out.putInt(-1);
+            } else {
+                out.putInt(array.length);
+                for (boolean value : array) {
+                    out.put((byte) (value ? 1 : 0));
+                }
+            }
+        }
+
+        @Override
+        public void unpack(@NonNull Object obj, @NonNull ByteBuffer in)
+                throws IllegalAccessException {
+            int length = in.getInt();
+            if (length < 0) {
+                field.set(obj, null);
+            } else {
+                boolean[] array = new boolean[length];
+                for (int i = 0; i < length; i++) {
+                    array[i] = in.get() != 0;
+                }
+                field.set(obj, array);
+            }
+        }
+    }
+
+    private static class BundleAccessor extends ObjectAccessor {
+        BundleAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void put(@NonNull Bundle bundle, Object value) {
+            bundle.putBundle(key, (Bundle) value);
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            return bundle.getBundle(key);
+        }
+    }
+
+    private static class ByteArrayAccessor extends ObjectAccessor
+            implements FieldAccessor.Packable {
+        ByteArrayAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void put(@NonNull Bundle bundle, Object value) {
+            bundle.putByteArray(key, (byte[]) value);
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            return bundle.getByteArray(key);
+        }
+
+        @Override
+        public int packedSize(@NonNull Object obj) throws IllegalAccessException {
+            byte[] array = (byte[]) field.get(obj);
+            return 4 + (array == null ? 0 : array.length);
+        }
+
+        @Override
+        public void pack(@NonNull Object obj, @NonNull ByteBuffer out)
+                throws IllegalAccessException {
+            byte[] array = (byte[]) field.get(obj);
+            if (array == null) {
+                out.putInt(-1);
+            } else {
+                out.putInt(array.length);
+                out.put(array);
+            }
+        }
+
+        @Override
+        public void unpack(@NonNull Object obj, @NonNull ByteBuffer in)
+                throws IllegalAccessException {
+            int length = in.getInt();
+            if (length < 0) {
+                field.set(obj, null);
+            } else {
+                byte[] array = new byte[length];
+                in.get(array);
+                field.set(obj, array);
+            }
+        }
+    }
+
+    private static class CharArrayAccessor extends ObjectAccessor
+            implements FieldAccessor.Packable {
+        CharArrayAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void put(@NonNull Bundle bundle, Object value) {
+            bundle.putCharArray(key, (char[]) value);
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            return bundle.getCharArray(key);
+        }
+
+        @Override
+        public int packedSize(@NonNull Object obj) throws IllegalAccessException {
+            char[] array = (char[]) field.get(obj);
+            return 4 + (array == null ? 0 : array.length * 2);
+        }
+
+        @Override
+        public void pack(@NonNull Object obj, @NonNull ByteBuffer out)
+                throws IllegalAccessException {
+            char[] array = (char[]) field.get(obj);
+            if (array == null) {
+                out.putInt(-1);
+            } else {
+                out.putInt(array.length);
+                for (char value : array) {
+                    out.putChar(value);
+                }
+            }
+        }
+
+        @Override
+        public void unpack(@NonNull Object obj, @NonNull ByteBuffer in)
+                throws IllegalAccessException {
+            int length = in.getInt();
+            if (length < 0) {
+                field.set(obj, null);
+            } else {
+                char[] array = new char[length];
+                for (int i = 0; i < length; i++) {
+                    array[i] = in.getChar();
+                }
+                field.set(obj, array);
+            }
+        }
+    }
+
+    private static class CharSequenceAccessor extends ObjectAccessor {
+        CharSequenceAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void put(@NonNull Bundle bundle, Object value) {
+            bundle.putCharSequence(key, (CharSequence) value);
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            return bundle.getCharSequence(key);
+        }
+    }
+
+    private static class CharSequenceArrayAccessor extends ObjectAccessor {
+        CharSequenceArrayAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void put(@NonNull Bundle bundle, Object value) {
+            bundle.putCharSequenceArray(key, (CharSequence[]) value);
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            return bundle.getCharSequenceArray(key);
+        }
+    }
+
+    private static class DoubleArrayAccessor extends ObjectAccessor
+            implements FieldAccessor.Packable {
+        DoubleArrayAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void put(@NonNull Bundle bundle, Object value) {
+            bundle.putDoubleArray(key, (double[]) value);
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            return bundle.getDoubleArray(key);
+        }
+
+        @Override
+        public int packedSize(@NonNull Object obj) throws IllegalAccessException {
+            double[] array = (double[]) field.get(obj);
+            return 4 + (array == null ? 0 : array.length * 8);
+        }
+
+        @Override
+        public void pack(@NonNull Object obj, @NonNull ByteBuffer out)
+                throws IllegalAccessException {
+            double[] array = (double[]) field.get(obj);
+            if (array == null) {
+                out.putInt(-1);
+            } else {
+                out.putInt(array.length);
+                for (double value : array) {
+                    out.putDouble(value);
+                }
+            }
+        }
+
+        @Override
+        public void unpack(@NonNull Object obj, @NonNull ByteBuffer in)
+                throws IllegalAccessException {
+            int length = in.getInt();
+            if (length < 0) {
+                field.set(obj, null);
+            } else {
+                double[] array = new double[length];
+                for (int i = 0; i < length; i++) {
+                    array[i] = in.getDouble();
+                }
+                field.set(obj, array);
+            }
+        }
+    }
+
+    private static class FloatArrayAccessor extends ObjectAccessor
+            implements FieldAccessor.Packable {
+        FloatArrayAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void put(@NonNull Bundle bundle, Object value) {
+            bundle.putFloatArray(key, (float[]) value);
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            return bundle.getFloatArray(key);
+        }
+
+        @Override
+        public int packedSize(@NonNull Object obj) throws IllegalAccessException {
+            float[] array = (float[]) field.get(obj);
+            return 4 + (array == null ? 0 : array.length * 4);
+        }
+
+        @Override
+        public void pack(@NonNull Object obj, @NonNull ByteBuffer out)
+                throws IllegalAccessException {
+            float[] array = (float[]) field.get(obj);
+            if (array == null) {
+                out.putInt(-1);
+            } else {
+                out.putInt(array.length);
+                for (float value : array) {
+                    out.putFloat(value);
+                }
+            }
+        }
+
+        @Override
+        public void unpack(@NonNull Object obj, @NonNull ByteBuffer in)
+                throws IllegalAccessException {
+            int length = in.getInt();
+            if (length < 0) {
+                field.set(obj, null);
+            } else {
+                float[] array = new float[length];
+                for (int i = 0; i < length; i++) {
+                    array[i] = in.getFloat();
+                }
+                field.set(obj, array);
+            }
+        }
+    }
+
+    private static class IntArrayAccessor extends ObjectAccessor
+            implements FieldAccessor.Packable {
+        IntArrayAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void put(@NonNull Bundle bundle, Object value) {
+            bundle.putIntArray(key, (int[]) value);
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            return bundle.getIntArray(key);
+        }
+
+        @Override
+        public int packedSize(@NonNull Object obj) throws IllegalAccessException {
+            int[] array = (int[]) field.get(obj);
+            return 4 + (array == null ? 0 : array.length * 4);
+        }
+
+        @Override
+        public void pack(@NonNull Object obj, @NonNull ByteBuffer out)
+                throws IllegalAccessException {
+            int[] array = (int[]) field.get(obj);
+            if (array == null) {
+                out.putInt(-1);
+            } else {
+                out.putInt(array.length);
+                for (int value : array) {
+                    out.putInt(value);
+                }
+            }
+        }
+
+        @Override
+        public void unpack(@NonNull Object obj, @NonNull ByteBuffer in)
+                throws IllegalAccessException {
+            int length = in.getInt();
+            if (length < 0) {
+                field.set(obj, null);
+            } else {
+                int[] array = new int[length];
+                for (int i = 0; i < length; i++) {
+                    array[i] = in.getInt();
+                }
+                field.set(obj, array);
+            }
+        }
+    }
+
+    private static class LongArrayAccessor extends ObjectAccessor
+            implements FieldAccessor.Packable {
+        LongArrayAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void put(@NonNull Bundle bundle, Object value) {
+            bundle.putLongArray(key, (long[]) value);
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            return bundle.getLongArray(key);
+        }
+
+        @Override
+        public int packedSize(@NonNull Object obj) throws IllegalAccessException {
+            long[] array = (long[]) field.get(obj);
+            return 4 + (array == null ? 0 : array.length * 8);
+        }
+
+        @Override
+        public void pack(@NonNull Object obj, @NonNull ByteBuffer out)
+                throws IllegalAccessException {
+            long[] array = (long[]) field.get(obj);
+            if (array == null) {
+                out.putInt(-1);
+            } else {
+                out.putInt(array.length);
+                for (long value : array) {
+                    out.putLong(value);
+                }
+            }
+        }
+
+        @Override
+        public void unpack(@NonNull Object obj, @NonNull ByteBuffer in)
+                throws IllegalAccessException {
+            int length = in.getInt();
+            if (length < 0) {
+                field.set(obj, null);
+            } else {
+                long[] array = new long[length];
+                for (int i = 0; i < length; i++) {
+                    array[i] = in.getLong();
+                }
+                field.set(obj, array);
+            }
+        }
+    }
+
+    private static class ShortArrayAccessor extends ObjectAccessor
+            implements FieldAccessor.Packable {
+        ShortArrayAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void put(@NonNull Bundle bundle, Object value) {
+            bundle.putShortArray(key, (short[]) value);
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            return bundle.getShortArray(key);
+        }
+
+        @Override
+        public int packedSize(@NonNull Object obj) throws IllegalAccessException {
+            short[] array = (short[]) field.get(obj);
+            return 4 + (array == null ? 0 : array.length * 2);
+        }
+
+        @Override
+        public void pack(@NonNull Object obj, @NonNull ByteBuffer out)
+                throws IllegalAccessException {
+            short[] array = (short[]) field.get(obj);
+            if (array == null) {
+                out.putInt(-1);
+            } else {
+                out.putInt(array.length);
+                for (short value : array) {
+                    out.putShort(value);
+                }
+            }
+        }
+
+        @Override
+        public void unpack(@NonNull Object obj, @NonNull ByteBuffer in)
+                throws IllegalAccessException {
+            int length = in.getInt();
+            if (length < 0) {
+                field.set(obj, null);
+            } else {
+                short[] array = new short[length];
+                for (int i = 0; i < length; i++) {
+                    array[i] = in.getShort();
+                }
+                field.set(obj, array);
+            }
+        }
+    }
+
+    private static class StringAccessor extends ObjectAccessor {
+        StringAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void put(@NonNull Bundle bundle, Object value) {
+            bundle.putString(key, (String) value);
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            return bundle.getString(key);
+        }
+    }
+
+    private static class StringArrayAccessor extends ObjectAccessor {
+        StringArrayAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void put(@NonNull Bundle bundle, Object value) {
+            bundle.putStringArray(key, (String[]) value);
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            return bundle.getStringArray(key);
+        }
+    }
+
+    private static class ParcelableAccessor extends ObjectAccessor {
+        ParcelableAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void put(@NonNull Bundle bundle, Object value) {
+            bundle.putParcelable(key, (Parcelable) value);
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            return bundle.getParcelable(key);
+        }
+    }
+
+    private static class ParcelableArrayAccessor extends ObjectAccessor {
+        ParcelableArrayAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void put(@NonNull Bundle bundle, Object value) {
+            bundle.putParcelableArray(key, (Parcelable[]) value);
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            return bundle.getParcelableArray(key);
+        }
+    }
+
+    /**
+     * Stores values with {@link Bundle#putSerializable(String, Serializable)}, or as serialized
+     * bytes in incremental mode (see {@link EncodedCache}) to skip serialization of unchanged
+     * immutable values.
+     */
+    private static class SerializableAccessor extends ObjectAccessor
+            implements FieldAccessor.Encodable, FieldAccessor.Deferrable {
+        private final String bytesKey;
+
+        SerializableAccessor(Field field, String key) {
+            super(field, key);
+            this.bytesKey = key + SERIALIZED_SUFFIX;
+        }
+
+        @Override
+        void save(@NonNull Object obj, @NonNull Bundle bundle) throws IllegalAccessException {
+            Object value = field.get(obj);
+            if (value == null || !EncodedCache.isEnabled()) {
+                put(bundle, value);
+            } else {
+                bundle.putByteArray(bytesKey, encodeCached(this, obj, key, value));
+            }
+        }
+
+        @Override
+        void restore(@NonNull Object obj, @NonNull Bundle bundle) throws IllegalAccessException {
+            field.set(obj, decodeStored(read(bundle)));
+        }
+
+        @Override
+        void put(@NonNull Bundle bundle, Object value) {
+            bundle.putSerializable(key, (Serializable) value);
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            return bundle.getSerializable(key);
+        }
+
+        @Override
+        public Object read(@NonNull Bundle bundle) {
+            byte[] bytes = bundle.getByteArray(bytesKey);
+            if (bytes == null) {
+                return get(bundle);
+            } else {
+                bundle.remove(bytesKey);
+                return ByteBuffer.wrap(bytes); // Not serializable, so can't be confused with value
+            }
+        }
+
+        @Override
+        public Object decodeStored(Object stored) {
+            return stored instanceof ByteBuffer ? decode((ByteBuffer) stored) : stored;
+        }
+
+        @Override
+        public byte[] encode(@NonNull Object value) {
+            try {
+                return serialize(value);
+            } catch (IOException e) {
+                throw new RuntimeException("Can't serialize field value: " + field.getName(), e);
+            }
+        }
+
+        @Override
+        public Object decode(@NonNull ByteBuffer bytes) {
+            try {
+                return deserialize(bytes);
+            } catch (IOException | ClassNotFoundException e) {
+                Log.e(TAG, "Can't deserialize field value: " + field.getName(), e);
+                return null;
+            }
+        }
+    }
+
+    private static class ParcelableArrayListAccessor extends ObjectAccessor {
+        ParcelableArrayListAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void put(@NonNull Bundle bundle, Object value) {
+            bundle.putParcelableArrayList(key, (ArrayList<? extends Parcelable>) value);
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            return bundle.getParcelableArrayList(key);
+        }
+    }
+
+    /**
+     * Stores list as {@code int[]}, or as Integer list if it contains null elements.
+     */
+    private static class IntegerArrayListAccessor extends ObjectAccessor {
+        IntegerArrayListAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void put(@NonNull Bundle bundle, Object value) {
+            ArrayList<Integer> list = (ArrayList<Integer>) value;
+            if (list == null || list.contains(null)) {
+                bundle.putIntegerArrayList(key, list);
+            } else {
+                int[] array = new int[list.size()];
+                for (int i = 0, size = array.length; i < size; i++) {
+                    array[i] = list.get(i);
+                }
+                bundle.putIntArray(key, array);
+            }
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            Object value = bundle.get(key);
+            if (value instanceof int[]) {
+                int[] array = (int[]) value;
+                ArrayList<Integer> list = new ArrayList<>(array.length);
+                for (int item : array) {
+                    list.add(item);
+                }
+                return list;
+            } else {
+                return value; // Integer list or Serializable list saved by previous versions
+            }
+        }
+    }
+
+    /**
+     * Stores list as {@code long[]}, or as Serializable if it contains null elements.
+     */
+    private static class LongArrayListAccessor extends ObjectAccessor {
+        LongArrayListAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void put(@NonNull Bundle bundle, Object value) {
+            ArrayList<Long> list = (ArrayList<Long>) value;
+            if (list == null || list.contains(null)) {
+                bundle.putSerializable(key, list);
+            } else {
+                long[] array = new long[list.size()];
+                for (int i = 0, size = array.length; i < size; i++) {
+                    array[i] = list.get(i);
+                }
+                bundle.putLongArray(key, array);
+            }
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            Object value = bundle.get(key);
+            if (value instanceof long[]) {
+                long[] array = (long[]) value;
+                ArrayList<Long> list = new ArrayList<>(array.length);
+                for (long item : array) {
+                    list.add(item);
+                }
+                return list;
+            } else {
+                return value; // Serializable list
+            }
+        }
+    }
+
+    private static class SparseParcelableArrayAccessor extends ObjectAccessor {
+        SparseParcelableArrayAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void put(@NonNull Bundle bundle, Object value) {
+            bundle.putSparseParcelableArray(key, (SparseArray<? extends Parcelable>) value);
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            return bundle.getSparseParcelableArray(key);
+        }
+    }
+
+    /**
+     * Stores sparse array as {@code int[]} of interleaved keys and values.
+     */
+    private static class SparseIntArrayAccessor extends ObjectAccessor
+            implements FieldAccessor.Packable {
+        SparseIntArrayAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void put(@NonNull Bundle bundle, Object value) {
+            SparseIntArray sparse = (SparseIntArray) value;
+            int[] array = null;
+            if (sparse != null) {
+                array = new int[sparse.size() * 2];
+                for (int i = 0, size = sparse.size(); i < size; i++) {
+                    array[2 * i] = sparse.keyAt(i);
+                    array[2 * i + 1] = sparse.valueAt(i);
+                }
+            }
+            bundle.putIntArray(key, array);
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            int[] array = bundle.getIntArray(key);
+            if (array == null) {
+                return null;
+            }
+            SparseIntArray sparse = new SparseIntArray(array.length / 2);
+            for (int i = 0, size = array.length / 2; i < size; i++) {
+                sparse.append(array[2 * i], array[2 * i + 1]);
+            }
+            return sparse;
+        }
+
+        @Override
+        public int packedSize(@NonNull Object obj) throws IllegalAccessException {
+            SparseIntArray sparse = (SparseIntArray) field.get(obj);
+            return 4 + (sparse == null ? 0 : sparse.size() * 8);
+        }
+
+        @Override
+        public void pack(@NonNull Object obj, @NonNull ByteBuffer out)
+                throws IllegalAccessException {
+            SparseIntArray sparse = (SparseIntArray) field.get(obj);
+            if (sparse == null) {
+                out.putInt(-1);
+            } else {
+                out.putInt(sparse.size());
+                for (int i = 0, size = sparse.size(); i < size; i++) {
+                    out.putInt(sparse.keyAt(i));
+                    out.putInt(sparse.valueAt(i));
+                }
+            }
+        }
+
+        @Override
+        public void unpack(@NonNull Object obj, @NonNull ByteBuffer in)
+                throws IllegalAccessException {
+            int length = in.getInt();
+            if (length < 0) {
+                field.set(obj, null);
+            } else {
+                SparseIntArray sparse = new SparseIntArray(length);
+                for (int i = 0; i < length; i++) {
+                    sparse.append(in.getInt(), in.getInt());
+                }
+                field.set(obj, sparse);
+            }
+        }
+    }
+
+    /**
+     * Stores sparse array as {@code int[]} of interleaved keys and values (1 or 0).
+     */
+    private static class SparseBooleanArrayAccessor extends ObjectAccessor
+            implements FieldAccessor.Packable {
+        SparseBooleanArrayAccessor(Field field, String key) {
+            super(field, key);
+        }
+
+        @Override
+        void put(@NonNull Bundle bundle, Object value) {
+            SparseBooleanArray sparse = (SparseBooleanArray) value;
+            int[] array = null;
+            if (sparse != null) {
+                array = new int[sparse.size() * 2];
+                for (int i = 0, size = sparse.size(); i < size; i++) {
+                    array[2 * i] = sparse.keyAt(i);
+                    array[2 * i + 1] = sparse.valueAt(i) ? 1 : 0;
+                }
+            }
+            bundle.putIntArray(key, array);
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            int[] array = bundle.getIntArray(key);
+            if (array == null) {
+                return null;
+            }
+            SparseBooleanArray sparse = new SparseBooleanArray(array.length / 2);
+            for (int i = 0, size = array.length / 2; i < size; i++) {
+                sparse.append(array[2 * i], array[2 * i + 1] != 0);
+            }
+            return sparse;
+        }
+
+        @Override
+        public int packedSize(@NonNull Object obj) throws IllegalAccessException {
+            SparseBooleanArray sparse = (SparseBooleanArray) field.get(obj);
+            return 4 + (sparse == null ? 0 : sparse.size() * 5);
+        }
+
+        @Override
+        public void pack(@NonNull Object obj, @NonNull ByteBuffer out)
+                throws IllegalAccessException {
+            SparseBooleanArray sparse = (SparseBooleanArray) field.get(obj);
+            if (sparse == null) {
+                out.putInt(-1);
+            } else {
+                out.putInt(sparse.size());
+                for (int i = 0, size = sparse.size(); i < size; i++) {
+                    out.putInt(sparse.keyAt(i));
+                    out.put((byte) (sparse.valueAt(i) ? 1 : 0));
+                }
+            }
+        }
+
+        @Override
+        public void unpack(@NonNull Object obj, @NonNull ByteBuffer in)
+                throws IllegalAccessException {
+            int length = in.getInt();
+            if (length < 0) {
+                field.set(obj, null);
+            } else {
+                SparseBooleanArray sparse = new SparseBooleanArray(length);
+                for (int i = 0; i < length; i++) {
+                    sparse.append(in.getInt(), in.get() != 0);
+                }
+                field.set(obj, sparse);
+            }
+        }
+    }
+
+    /**
+     * Stores keys as {@code long[]} and values as Parcelable array under additional key.
+     */
+    private static class LongSparseArrayAccessor extends ObjectAccessor {
+        private final String valuesKey;
+
+        LongSparseArrayAccessor(Field field, String key) {
+            super(field, key);
+            valuesKey = key + "#values";
+        }
+
+        @Override
+        void put(@NonNull Bundle bundle, Object value) {
+            LongSparseArray<?> sparse = (LongSparseArray<?>) value;
+            long[] keys = null;
+            Parcelable[] values = null;
+            if (sparse != null) {
+                keys = new long[sparse.size()];
+                values = new Parcelable[sparse.size()];
+                for (int i = 0, size = sparse.size(); i < size; i++) {
+                    keys[i] = sparse.keyAt(i);
+                    values[i] = (Parcelable) sparse.valueAt(i);
+                }
+            }
+            bundle.putLongArray(key, keys);
+            bundle.putParcelableArray(valuesKey, values);
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            long[] keys = bundle.getLongArray(key);
+            Parcelable[] values = bundle.getParcelableArray(valuesKey);
+            bundle.remove(valuesKey);
+            if (keys == null || values == null) {
+                return null;
+            }
+            LongSparseArray<Parcelable> sparse = new LongSparseArray<>(keys.length);
+            for (int i = 0, size = keys.length; i < size; i++) {
+                sparse.append(keys[i], values[i]);
+            }
+            return sparse;
+        }
+    }
+
+    /**
+     * Same as {@link LongSparseArrayAccessor} but for framework's LongSparseArray (API 16+),
+     * both are stored the same way so field's type can be switched without losing state.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class FrameworkLongSparseArrayAccessor extends ObjectAccessor {
+        private final String valuesKey;
+
+        FrameworkLongSparseArrayAccessor(Field field, String key) {
+            super(field, key);
+            valuesKey = key + "#values";
+        }
+
+        @Override
+        void put(@NonNull Bundle bundle, Object value) {
+            android.util.LongSparseArray<?> sparse = (android.util.LongSparseArray<?>) value;
+            long[] keys = null;
+            Parcelable[] values = null;
+            if (sparse != null) {
+                keys = new long[sparse.size()];
+                values = new Parcelable[sparse.size()];
+                for (int i = 0, size = sparse.size(); i < size; i++) {
+                    keys[i] = sparse.keyAt(i);
+                    values[i] = (Parcelable) sparse.valueAt(i);
+                }
+            }
+            bundle.putLongArray(key, keys);
+            bundle.putParcelableArray(valuesKey, values);
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            long[] keys = bundle.getLongArray(key);
+            Parcelable[] values = bundle.getParcelableArray(valuesKey);
+            bundle.remove(valuesKey);
+            if (keys == null || values == null) {
+                return null;
+            }
+            android.util.LongSparseArray<Parcelable> sparse =
+                    new android.util.LongSparseArray<>(keys.length);
+            for (int i = 0, size = keys.length; i < size; i++) {
+                sparse.append(keys[i], values[i]);
+            }
+            return sparse;
+        }
+    }
+
+    /**
+     * Stores values as UTF-8 JSON bytes written with cached {@link TypeAdapter}.
+     * Values stored as JSON strings by previous versions are still supported on restore.
+     */
+    private static class GsonAccessor extends ObjectAccessor
+            implements FieldAccessor.Encodable, FieldAccessor.Deferrable {
+        private final Type type;
+        private volatile TypeAdapter<Object> adapter;
+
+        GsonAccessor(Field field, String key) {
+            super(field, key);
+            this.type = field.getGenericType();
+        }
+
+        private TypeAdapter<Object> getAdapter() {
+            if (adapter == null) {
+                adapter = GsonHelper.getAdapter(type);
+            }
+            return adapter;
+        }
+
+        @Override
+        void save(@NonNull Object obj, @NonNull Bundle bundle) throws IllegalAccessException {
+            Object value = field.get(obj);
+            bundle.putByteArray(key, value == null ? null : encodeCached(this, obj, key, value));
+        }
+
+        @Override
+        void put(@NonNull Bundle bundle, Object value) {
+            bundle.putByteArray(key, value == null ? null : encode(value));
+        }
+
+        @Override
+        Object get(@NonNull Bundle bundle) {
+            return decodeStored(read(bundle));
+        }
+
+        @Override
+        public Object read(@NonNull Bundle bundle) {
+            Object stored = bundle.get(key);
+            return stored instanceof byte[] ? ByteBuffer.wrap((byte[]) stored) : stored;
+        }
+
+        @Override
+        public Object decodeStored(Object stored) {
+            if (stored instanceof ByteBuffer) {
+                return decode((ByteBuffer) stored);
+            } else if (stored instanceof String) {
+                return GsonHelper.fromJson((String) stored, type);
+            } else {
+                return null;
+            }
+        }
+
+        @Override
+        public byte[] encode(@NonNull Object value) {
+            return GsonHelper.toJsonBytes(value, getAdapter());
+        }
+
+        @Override
+        public Object decode(@NonNull ByteBuffer bytes) {
+            return GsonHelper.fromJson(new ByteBufferInputStream(bytes), getAdapter());
+        }
+    }
+
+    /**
+     * Stores encoded field value either inline as {@code byte[]} or, if its size exceeds
+     * {@link OffloadStore#getThreshold()}, in a file with only file token kept in the Bundle.
+     */
+    private static class OffloadAccessor extends FieldAccessor
+            implements FieldAccessor.Deferrable {
+        private final FieldAccessor.Encodable codec;
+        private final String tokenKey;
+
+        OffloadAccessor(Field field, String key, FieldAccessor.Encodable codec) {
+            super(field, key);
+            this.codec = codec;
+            this.tokenKey = key + "#offload"; // Can't clash with field name
+        }
+
+        @Override
+        void save(@NonNull Object obj, @NonNull Bundle bundle) throws IllegalAccessException {
+            Object value = field.get(obj);
+            byte[] bytes = value == null ? null : encodeCached(codec, obj, key, value);
+            if (bytes == null) {
+                return;
+            }
+
+            OffloadStore store = OffloadStore.get();
+            if (store != null && bytes.length >= store.getThreshold()) {
+                String token = store.write(obj, key, bytes);
+                if (token != null) {
+                    bundle.putString(tokenKey, token);
+                    return;
+                }
+            }
+
+            bundle.putByteArray(key, bytes); // Storing inline if not offloaded
+        }
+
+        @Override
+        void restore(@NonNull Object obj, @NonNull Bundle bundle) throws IllegalAccessException {
+            field.set(obj, decodeStored(read(bundle)));
+        }
+
+        @Override
+        public Object read(@NonNull Bundle bundle) {
+            String token = bundle.getString(tokenKey);
+            if (token != null) {
+                bundle.remove(tokenKey);
+                return token;
+            } else {
+                byte[] bytes = bundle.getByteArray(key);
+                return bytes == null ? null : ByteBuffer.wrap(bytes);
+            }
+        }
+
+        @Override
+        public Object decodeStored(Object stored) {
+            if (stored instanceof String) {
+                final String token = (String) stored;
+                final OffloadStore store = OffloadStore.get();
+                final ByteBuffer bytes = store == null ? null : store.read(token);
+                if (bytes == null) {
+                    Log.e(TAG, "Offloaded state is not available for field: " + field.getName());
+                }
+                final Object value = bytes == null ? null : codec.decode(bytes);
+                if (store != null) {
+                    store.delete(token);
+                }
+                return value;
+            } else if (stored instanceof ByteBuffer) {
+                return codec.decode((ByteBuffer) stored);
+            } else {
+                return null;
+            }
+        }
+    }
+
+}
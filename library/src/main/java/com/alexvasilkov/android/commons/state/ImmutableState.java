@@ -0,0 +1,10 @@
+package com.alexvasilkov.android.commons.state;
+
+/**
+ * Marks classes whose instances are never modified after creation, so that encoded form of
+ * Gson and Serializable field values of such types can be reused by incremental mode.<br/>
+ * See {@link InstanceStateManager#setIncrementalSaves(boolean)}.
+ */
+@SuppressWarnings("WeakerAccess") // Public API
+public interface ImmutableState {
+}
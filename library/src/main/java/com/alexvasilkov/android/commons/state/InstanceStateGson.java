@@ -10,4 +10,12 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 public @interface InstanceStateGson {
 
+    /**
+     * Whether field value can be written into app-private file instead of the Bundle, to avoid
+     * hitting Binder transaction size limit with large values. Only the file token is kept in
+     * the Bundle.<br/>
+     * See {@link InstanceStateManager#enableOffload(android.content.Context, int)}.
+     */
+    boolean offload() default false;
+
 }
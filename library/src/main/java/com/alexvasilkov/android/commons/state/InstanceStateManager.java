@@ -1,18 +1,25 @@
 package com.alexvasilkov.android.commons.state;
 
+import android.content.Context;
 import android.os.Bundle;
-import android.os.Parcelable;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
 
 import com.alexvasilkov.android.commons.utils.GsonHelper;
 
-import java.io.Serializable;
 import java.lang.reflect.Field;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Helps saving and restoring {@link android.app.Activity} or {@link android.app.Fragment}
@@ -21,18 +28,32 @@ import java.util.HashMap;
  * Supported fields types: boolean, boolean[], byte, byte[], char, char[], CharSequence,
  * CharSequence[], double, double[], float, float[], int, int[], long, long[], short, short[],
  * String, String[], Bundle and all objects implementing Serializable.<br/>
+ * Saved state size can be checked with {@link StateProfiler}.<br/>
+ * If {@code android-commons-processor} annotation processor is used then generated
+ * {@link StateSaver} classes will be used instead of reflection where possible.<br/>
  * See also {@link #saveInstanceState(Object, android.os.Bundle)} and
  * {@link #restoreInstanceState(Object, android.os.Bundle)} methods.
  */
 @SuppressWarnings({ "WeakerAccess", "unused" }) // Public API
 public class InstanceStateManager<T> {
 
+    private static final String TAG = InstanceStateManager.class.getSimpleName();
+
     private static final String PREFIX = "instance_state:";
 
-    private T obj;
-    private final HashMap<String, Field> fieldsMap = new HashMap<>();
-    private final HashMap<String, Boolean> isGsonMap = new HashMap<>();
-    private final HashMap<Field, String> keysMap = new HashMap<>();
+    private static final String PACKED_KEY = PREFIX + "#packed"; // Can't clash with field name
+    private static final String SAVER_SUFFIX = "$$StateSaver";
+
+    private static final ConcurrentHashMap<Class<?>, ClassState> cache =
+            new ConcurrentHashMap<>();
+    private static final AtomicLong cacheHits = new AtomicLong();
+    private static final AtomicLong cacheMisses = new AtomicLong();
+    private static final AtomicLong cacheBuildTime = new AtomicLong();
+
+    private static volatile boolean packPrimitives;
+
+    private final T obj;
+    private final ClassState state;
 
 
     /**
@@ -47,6 +68,13 @@ public class InstanceStateManager<T> {
         if (outState == null) {
             outState = new Bundle();
         }
+        AsyncRestore.finishPending(obj);
+        if (StateProfiler.isEnabled()) {
+            Set<String> keysBefore = new HashSet<>(outState.keySet());
+            new InstanceStateManager<>(obj).saveState(outState);
+            StateProfiler.onStateSaved(obj.getClass(), outState, keysBefore);
+            return outState;
+        }
         return new InstanceStateManager<>(obj).saveState(outState);
     }
 
@@ -63,54 +91,222 @@ public class InstanceStateManager<T> {
         }
     }
 
+    /**
+     * Same as {@link #restoreInstanceState(Object, Bundle)}, but values of Gson, offloaded and
+     * incrementally saved Serializable fields (which can be expensive to decode) are decoded on
+     * background thread and assigned on main thread afterwards. All other fields are restored
+     * synchronously, as well as fields handled by generated {@link StateSaver} classes.<br/>
+     * Given {@code callback} is called on main thread once all fields are restored (or
+     * immediately if there are no fields to decode in background).<br/>
+     * If the state is saved again before decoding is finished, then
+     * {@link #saveInstanceState(Object, Bundle)} will wait for decoding to finish.<br/>
+     * Fields which are assigned before decoding is finished keep assigned values, restored
+     * values are only assigned to fields which still hold their values from before the restore.
+     */
+    public static <T> void restoreInstanceStateAsync(@NonNull T obj, @Nullable Bundle savedState,
+            @Nullable RestoreCallback<T> callback) {
+        if (savedState != null) {
+            new InstanceStateManager<>(obj).restoreStateAsync(savedState, callback);
+        } else if (callback != null) {
+            callback.onStateRestored(obj);
+        }
+    }
+
+    /**
+     * Sets executor used to decode field values in
+     * {@link #restoreInstanceStateAsync(Object, Bundle, RestoreCallback)}.
+     * Single background thread is used by default.
+     */
+    public static void setBackgroundExecutor(@NonNull Executor executor) {
+        AsyncRestore.setExecutor(executor);
+    }
+
+    /**
+     * Returns statistics of the process-wide cache of annotated fields, which is used to avoid
+     * scanning classes hierarchy with reflection on every save / restore call.
+     */
+    @NonNull
+    public static CacheStats getCacheStats() {
+        return new CacheStats(cacheHits.get(), cacheMisses.get(), cacheBuildTime.get());
+    }
+
+    /**
+     * Enables or disables packed mode (disabled by default). In packed mode all primitive and
+     * primitive array fields of an object are written into a single {@code byte[]} entry instead
+     * of separate entries, which noticeably reduces resulting {@link android.os.Parcel} size for
+     * objects with many state fields.<br/>
+     * Packed entry also keeps a compact layout of its fields, so if fields were added or removed
+     * since the state was saved (e.g. after app update) all fields which are still present are
+     * restored by their names and types.<br/>
+     * Packed and regular entries are both supported on restore regardless of this setting.<br/>
+     * Note: fields handled by generated {@link StateSaver} classes are never packed.
+     */
+    public static void setPackedPrimitives(boolean enabled) {
+        packPrimitives = enabled;
+    }
+
+    /**
+     * Enables or disables incremental mode (disabled by default). In this mode last encoded
+     * form of Gson and Serializable fields is kept for each object and is reused on subsequent
+     * saves if field value is not changed, so that unchanged values are not converted to JSON
+     * or serialized again.<br/>
+     * Only immutable values are reused: strings, boxed primitives, enums and classes marked with
+     * {@link ImmutableState}. Such value is considered unchanged if the field references the same
+     * instance as during previous save. Other values are encoded on every save, since changes
+     * made in place can't be detected reliably.<br/>
+     * Fields handled by generated {@link StateSaver} classes are supported as well, through
+     * {@link StateSaverHelper}.
+     */
+    public static void setIncrementalSaves(boolean enabled) {
+        EncodedCache.setEnabled(enabled);
+    }
+
+    /**
+     * Enables writing values of fields marked with {@code offload = true} into app-private files
+     * instead of the Bundle, if their encoded size is not less than {@code thresholdBytes}.
+     * Only file tokens are kept in the Bundle in this case, which helps avoiding
+     * {@link android.os.TransactionTooLargeException}.<br/>
+     * Should be called from {@link android.app.Application#onCreate()} so that offloaded values
+     * can be restored after process restart.
+     */
+    public static void enableOffload(@NonNull Context context, int thresholdBytes) {
+        OffloadStore.init(context.getApplicationContext(), thresholdBytes);
+    }
+
+    /**
+     * Returns total number of bytes written into files instead of the Bundle since offloading
+     * was enabled, see {@link #enableOffload(Context, int)}.
+     */
+    public static long getOffloadedBytes() {
+        OffloadStore store = OffloadStore.get();
+        return store == null ? 0L : store.getOffloadedBytes();
+    }
+
     private InstanceStateManager(@NonNull T obj) {
         this.obj = obj;
+        this.state = getClassState(obj.getClass());
+    }
 
-        InstanceState an;
-        String key;
+    @NonNull
+    private static ClassState getClassState(@NonNull Class<?> type) {
+        ClassState state = cache.get(type);
+        if (state != null) {
+            cacheHits.incrementAndGet();
+            return state;
+        }
 
-        Class<?> clazz = obj.getClass();
+        final long started = System.nanoTime();
+        state = collectClassState(type);
+        cacheBuildTime.addAndGet(System.nanoTime() - started);
+        cacheMisses.incrementAndGet();
+
+        // If other thread was faster we'll use its state to always share the same instance
+        ClassState existing = cache.putIfAbsent(type, state);
+        return existing == null ? state : existing;
+    }
+
+    @NonNull
+    private static ClassState collectClassState(@NonNull Class<?> type) {
+        final Set<String> keys = new HashSet<>();
+        final List<StateSaver<Object>> savers = new ArrayList<>();
+        final List<FieldAccessor> fields = new ArrayList<>();
+
+        Class<?> clazz = type;
         while (clazz != null) {
-            addFields(clazz.getDeclaredFields());
+            addFields(clazz, keys, savers, fields);
             clazz = clazz.getSuperclass();
         }
+
+        return new ClassState(
+                savers.toArray(new StateSaver[savers.size()]),
+                fields.toArray(new FieldAccessor[fields.size()]));
     }
 
-    private void addFields(@NonNull Field[] fields) {
+    private static void addFields(@NonNull Class<?> clazz, @NonNull Set<String> keys,
+            @NonNull List<StateSaver<Object>> savers, @NonNull List<FieldAccessor> fields) {
+
+        final List<FieldAccessor> declared = new ArrayList<>();
         String key;
         boolean isGson;
+        boolean offload;
+
+        for (Field field : clazz.getDeclaredFields()) {
+            InstanceState state = field.getAnnotation(InstanceState.class);
+            InstanceStateGson stateGson = field.getAnnotation(InstanceStateGson.class);
 
-        for (Field field : fields) {
-            if (field.getAnnotation(InstanceState.class) != null) {
+            if (state != null) {
                 isGson = false;
-            } else if (field.getAnnotation(InstanceStateGson.class) != null) {
+                offload = state.offload();
+            } else if (stateGson != null) {
                 if (!GsonHelper.hasGson()) {
                     throw new RuntimeException("Gson library not found for InstanceStateGson");
                 }
                 isGson = true;
+                offload = stateGson.offload();
             } else {
                 continue;
             }
             key = field.getName();
 
-            if (fieldsMap.containsKey(key)) {
+            if (!keys.add(key)) {
                 throw new RuntimeException("Duplicate key \"" + key + "\" of InstanceState");
             } else {
-                field.setAccessible(true); // Removing private fields access restriction
-                fieldsMap.put(key, field);
-                isGsonMap.put(key, isGson);
-                keysMap.put(field, key);
+                declared.add(FieldAccessors.create(field, PREFIX + key, isGson, offload));
+            }
+        }
+
+        if (declared.isEmpty()) {
+            return;
+        }
+
+        StateSaver<Object> saver = findSaver(clazz);
+        if (saver != null) {
+            savers.add(saver);
+        } else {
+            for (FieldAccessor accessor : declared) {
+                // Removing private fields access restriction
+                accessor.field.setAccessible(true);
+                fields.add(accessor);
             }
         }
     }
 
+    /**
+     * Looks for {@link StateSaver} generated by annotation processor for the given class.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private static StateSaver<Object> findSaver(@NonNull Class<?> clazz) {
+        final Class<?> saverClass;
+        try {
+            saverClass = Class.forName(clazz.getName() + SAVER_SUFFIX,
+                    true, clazz.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null; // No generated saver, falling back to reflection
+        }
+
+        try {
+            return (StateSaver<Object>) saverClass.newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException("Can't create state saver: " + saverClass.getName(), e);
+        }
+    }
+
     @NonNull
     private Bundle saveState(@NonNull Bundle outState) {
+        for (StateSaver<Object> saver : state.savers) {
+            saver.save(obj, outState);
+        }
         try {
-            String key;
-            for (Field field : keysMap.keySet()) {
-                key = keysMap.get(field);
-                setBundleValue(field, obj, outState, PREFIX + key, isGsonMap.get(key));
+            if (packPrimitives && state.packed.length > 0) {
+                for (FieldAccessor accessor : state.regular) {
+                    accessor.save(obj, outState);
+                }
+                savePacked(outState);
+            } else {
+                for (FieldAccessor accessor : state.fields) {
+                    accessor.save(obj, outState);
+                }
             }
         } catch (IllegalAccessException e) {
             throw new RuntimeException("Can't access field value", e);
@@ -119,11 +315,36 @@ public class InstanceStateManager<T> {
     }
 
     private void restoreState(@NonNull Bundle savedInstanceState) {
+        restoreState(savedInstanceState, null, null);
+    }
+
+    /**
+     * Restores all fields. If {@code deferred} list is provided then
+     * {@link FieldAccessor.Deferrable} fields are not restored, instead they are added to this
+     * list and their stored data is added to {@code stored} list.
+     */
+    private void restoreState(@NonNull Bundle savedInstanceState,
+            @Nullable List<FieldAccessor> deferred, @Nullable List<Object> stored) {
+        for (StateSaver<Object> saver : state.savers) {
+            saver.restore(obj, savedInstanceState);
+        }
         try {
-            String key;
-            for (Field field : keysMap.keySet()) {
-                key = keysMap.get(field);
-                setInstanceValue(field, obj, savedInstanceState, PREFIX + key, isGsonMap.get(key));
+            final byte[] packed = savedInstanceState.getByteArray(PACKED_KEY);
+            final FieldAccessor[] fields = packed == null ? state.fields : state.regular;
+
+            for (FieldAccessor accessor : fields) {
+                if (deferred != null && accessor instanceof FieldAccessor.Deferrable) {
+                    deferred.add(accessor);
+                    stored.add(((FieldAccessor.Deferrable) accessor).read(savedInstanceState));
+                } else {
+                    accessor.restore(obj, savedInstanceState);
+                }
+                savedInstanceState.remove(accessor.key);
+            }
+
+            if (packed != null) {
+                restorePacked(packed);
+                savedInstanceState.remove(PACKED_KEY);
             }
         } catch (IllegalAccessException e) {
             throw new RuntimeException("Can't set field value", e);
@@ -131,204 +352,210 @@ public class InstanceStateManager<T> {
     }
 
     @SuppressWarnings("unchecked")
-    private static void setBundleValue(@NonNull Field field, @NonNull Object obj,
-            @NonNull Bundle bundle, @NonNull String key, boolean isGson)
-            throws IllegalAccessException {
-
-        if (isGson) {
-            bundle.putString(key, GsonHelper.toJson(field.get(obj)));
-            return;
-        }
-
-        Class<?> type = field.getType();
-        Type[] genericTypes = null;
-        if (field.getGenericType() instanceof ParameterizedType) {
-            genericTypes = ((ParameterizedType) field.getGenericType()).getActualTypeArguments();
+    private void restoreStateAsync(@NonNull Bundle savedInstanceState,
+            @Nullable RestoreCallback<T> callback) {
+        final List<FieldAccessor> deferred = new ArrayList<>();
+        final List<Object> stored = new ArrayList<>();
+        restoreState(savedInstanceState, deferred, stored);
+
+        if (deferred.isEmpty()) {
+            if (callback != null) {
+                callback.onStateRestored(obj);
+            }
+        } else {
+            new AsyncRestore(obj,
+                    deferred.toArray(new FieldAccessor[deferred.size()]),
+                    stored.toArray(),
+                    (RestoreCallback<Object>) callback).start();
         }
+    }
 
-        if (type.equals(Boolean.TYPE)) {
-            bundle.putBoolean(key, field.getBoolean(obj));
-
-        } else if (type.equals(boolean[].class)) {
-            bundle.putBooleanArray(key, (boolean[]) field.get(obj));
-
-        } else if (type.equals(Bundle.class)) {
-            bundle.putBundle(key, (Bundle) field.get(obj));
-
-        } else if (type.equals(Byte.TYPE)) {
-            bundle.putByte(key, field.getByte(obj));
-
-        } else if (type.equals(byte[].class)) {
-            bundle.putByteArray(key, (byte[]) field.get(obj));
-
-        } else if (type.equals(Character.TYPE)) {
-            bundle.putChar(key, field.getChar(obj));
-
-        } else if (type.equals(char[].class)) {
-            bundle.putCharArray(key, (char[]) field.get(obj));
-
-        } else if (type.equals(CharSequence.class)) {
-            bundle.putCharSequence(key, (CharSequence) field.get(obj));
-
-        } else if (type.equals(CharSequence[].class)) {
-            bundle.putCharSequenceArray(key, (CharSequence[]) field.get(obj));
-
-        } else if (type.equals(Double.TYPE)) {
-            bundle.putDouble(key, field.getDouble(obj));
-
-        } else if (type.equals(double[].class)) {
-            bundle.putDoubleArray(key, (double[]) field.get(obj));
-
-        } else if (type.equals(Float.TYPE)) {
-            bundle.putFloat(key, field.getFloat(obj));
-
-        } else if (type.equals(float[].class)) {
-            bundle.putFloatArray(key, (float[]) field.get(obj));
-
-        } else if (type.equals(Integer.TYPE)) {
-            bundle.putInt(key, field.getInt(obj));
-
-        } else if (type.equals(int[].class)) {
-            bundle.putIntArray(key, (int[]) field.get(obj));
-
-        } else if (type.equals(Long.TYPE)) {
-            bundle.putLong(key, field.getLong(obj));
-
-        } else if (type.equals(long[].class)) {
-            bundle.putLongArray(key, (long[]) field.get(obj));
-
-        } else if (type.equals(Short.TYPE)) {
-            bundle.putShort(key, field.getShort(obj));
-
-        } else if (type.equals(short[].class)) {
-            bundle.putShortArray(key, (short[]) field.get(obj));
-
-        } else if (type.equals(String.class)) {
-            bundle.putString(key, (String) field.get(obj));
-
-        } else if (type.equals(String[].class)) {
-            bundle.putStringArray(key, (String[]) field.get(obj));
+    private void savePacked(@NonNull Bundle outState) throws IllegalAccessException {
+        outState.putByteArray(PACKED_KEY, pack(obj, state));
+    }
 
-        } else if (Parcelable.class.isAssignableFrom(type)) {
-            bundle.putParcelable(key, (Parcelable) field.get(obj));
+    private void restorePacked(@NonNull byte[] packed) throws IllegalAccessException {
+        unpack(obj, state, packed);
+    }
 
-        } else if (type.equals(ArrayList.class)
-                && genericTypes != null
-                && genericTypes[0] instanceof Class
-                && Parcelable.class.isAssignableFrom((Class<?>) genericTypes[0])) {
-            bundle.putParcelableArrayList(key, (ArrayList<? extends Parcelable>) field.get(obj));
+    @VisibleForTesting
+    static byte[] pack(@NonNull Object obj) throws IllegalAccessException {
+        return pack(obj, getClassState(obj.getClass()));
+    }
 
-        } else if (type.isArray() && Parcelable.class.isAssignableFrom(type.getComponentType())) {
-            bundle.putParcelableArray(key, (Parcelable[]) field.get(obj));
+    @VisibleForTesting
+    static void unpack(@NonNull Object obj, @NonNull byte[] packed)
+            throws IllegalAccessException {
+        unpack(obj, getClassState(obj.getClass()), packed);
+    }
 
-        } else if (Serializable.class.isAssignableFrom(type)) {
-            bundle.putSerializable(key, (Serializable) field.get(obj));
+    /**
+     * Packs values as {@code [schema hash][values][signature, size of each value][count]}.
+     * Values go right after the schema hash, so they can be read sequentially if schema is the
+     * same, while the layout at the end allows reading values which are still known otherwise.
+     */
+    private static byte[] pack(@NonNull Object obj, @NonNull ClassState state)
+            throws IllegalAccessException {
+        final int count = state.packed.length;
+        final int[] sizes = new int[count];
+        int size = 4 + 8 * count + 4; // Schema hash, layout and fields count
+        for (int i = 0; i < count; i++) {
+            sizes[i] = ((FieldAccessor.Packable) state.packed[i]).packedSize(obj);
+            size += sizes[i];
+        }
 
-        } else {
-            throw new RuntimeException("Unsupported field type: " + field.getName()
-                    + ", " + type.getName());
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(state.schemaHash);
+        for (FieldAccessor accessor : state.packed) {
+            ((FieldAccessor.Packable) accessor).pack(obj, buffer);
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(state.signatures[i]).putInt(sizes[i]);
         }
+        buffer.putInt(count);
+        return buffer.array();
     }
 
-    private static void setInstanceValue(@NonNull Field field, @NonNull Object obj,
-            @NonNull Bundle bundle, @NonNull String key, boolean isGson)
-            throws IllegalArgumentException, IllegalAccessException {
+    private static void unpack(@NonNull Object obj, @NonNull ClassState state,
+            @NonNull byte[] packed) throws IllegalAccessException {
+        final ByteBuffer buffer = ByteBuffer.wrap(packed);
 
-        if (isGson) {
-            field.set(obj, GsonHelper.fromJson(bundle.getString(key), field.getGenericType()));
+        if (packed.length >= 4 && buffer.getInt() == state.schemaHash) {
+            for (FieldAccessor accessor : state.packed) {
+                ((FieldAccessor.Packable) accessor).unpack(obj, buffer);
+            }
             return;
         }
 
-        Class<?> type = field.getType();
+        Log.w(TAG, "Packed state of " + obj.getClass().getName()
+                + " was saved for different fields, restoring matching fields only");
 
-        Type[] genericTypes = null;
-        if (field.getGenericType() instanceof ParameterizedType) {
-            genericTypes = ((ParameterizedType) field.getGenericType()).getActualTypeArguments();
+        final int count = packed.length < 8 ? -1 : buffer.getInt(packed.length - 4);
+        if (count < 0 || count > (packed.length - 8) / 8) {
+            Log.e(TAG, "Packed state of " + obj.getClass().getName() + " is corrupted");
+            return;
         }
 
-        if (type.equals(Boolean.TYPE)) {
-            field.setBoolean(obj, bundle.getBoolean(key));
-
-        } else if (type.equals(boolean[].class)) {
-            field.set(obj, bundle.getBooleanArray(key));
-
-        } else if (type.equals(Bundle.class)) {
-            field.set(obj, bundle.getBundle(key));
-
-        } else if (type.equals(Byte.TYPE)) {
-            field.setByte(obj, bundle.getByte(key));
-
-        } else if (type.equals(byte[].class)) {
-            field.set(obj, bundle.getByteArray(key));
-
-        } else if (type.equals(Character.TYPE)) {
-            field.setChar(obj, bundle.getChar(key));
-
-        } else if (type.equals(char[].class)) {
-            field.set(obj, bundle.getCharArray(key));
-
-        } else if (type.equals(CharSequence.class)) {
-            field.set(obj, bundle.getCharSequence(key));
-
-        } else if (type.equals(CharSequence[].class)) {
-            field.set(obj, bundle.getCharSequenceArray(key));
-
-        } else if (type.equals(Double.TYPE)) {
-            field.setDouble(obj, bundle.getDouble(key));
-
-        } else if (type.equals(double[].class)) {
-            field.set(obj, bundle.getDoubleArray(key));
-
-        } else if (type.equals(Float.TYPE)) {
-            field.setFloat(obj, bundle.getFloat(key));
-
-        } else if (type.equals(float[].class)) {
-            field.set(obj, bundle.getFloatArray(key));
-
-        } else if (type.equals(Integer.TYPE)) {
-            field.setInt(obj, bundle.getInt(key));
-
-        } else if (type.equals(int[].class)) {
-            field.set(obj, bundle.getIntArray(key));
-
-        } else if (type.equals(Long.TYPE)) {
-            field.setLong(obj, bundle.getLong(key));
-
-        } else if (type.equals(long[].class)) {
-            field.set(obj, bundle.getLongArray(key));
-
-        } else if (type.equals(Short.TYPE)) {
-            field.setShort(obj, bundle.getShort(key));
+        final int layoutStart = packed.length - 4 - 8 * count;
+        int offset = 4;
+        for (int i = 0; i < count; i++) {
+            final int signature = buffer.getInt(layoutStart + 8 * i);
+            final int size = buffer.getInt(layoutStart + 8 * i + 4);
+            if (size < 0 || size > layoutStart - offset) {
+                Log.e(TAG, "Packed state of " + obj.getClass().getName() + " is corrupted");
+                return;
+            }
 
-        } else if (type.equals(short[].class)) {
-            field.set(obj, bundle.getShortArray(key));
+            final FieldAccessor accessor = state.findPacked(signature);
+            if (accessor != null) {
+                ((FieldAccessor.Packable) accessor)
+                        .unpack(obj, ByteBuffer.wrap(packed, offset, size));
+            }
+            offset += size;
+        }
+    }
 
-        } else if (type.equals(String.class)) {
-            field.set(obj, bundle.getString(key));
+    /**
+     * Generated savers and reflection-based fields of a class, cached per class.
+     */
+    private static class ClassState {
+        final StateSaver<Object>[] savers;
+        final FieldAccessor[] fields;
+        // Fields which can be packed, sorted by key to have stable order between app launches
+        final FieldAccessor[] packed;
+        // Fields which are always stored as separate entries
+        final FieldAccessor[] regular;
+        // Hashes of names and types of packed fields, used to find fields if schema was changed
+        final int[] signatures;
+        final int schemaHash;
+
+        ClassState(StateSaver<Object>[] savers, FieldAccessor[] fields) {
+            this.savers = savers;
+            this.fields = fields;
+
+            final List<FieldAccessor> packedList = new ArrayList<>();
+            final List<FieldAccessor> regularList = new ArrayList<>();
+            for (FieldAccessor accessor : fields) {
+                if (accessor instanceof FieldAccessor.Packable) {
+                    packedList.add(accessor);
+                } else {
+                    regularList.add(accessor);
+                }
+            }
 
-        } else if (type.equals(String[].class)) {
-            field.set(obj, bundle.getStringArray(key));
+            Collections.sort(packedList, new Comparator<FieldAccessor>() {
+                @Override
+                public int compare(FieldAccessor a1, FieldAccessor a2) {
+                    return a1.key.compareTo(a2.key);
+                }
+            });
+
+            this.packed = packedList.toArray(new FieldAccessor[packedList.size()]);
+            this.regular = regularList.toArray(new FieldAccessor[regularList.size()]);
+            this.signatures = new int[packed.length];
+
+            int hash = 1;
+            for (int i = 0; i < packed.length; i++) {
+                final int keyHash = packed[i].key.hashCode();
+                final int typeHash = packed[i].field.getType().getName().hashCode();
+                signatures[i] = 31 * keyHash + typeHash;
+                hash = 31 * hash + keyHash;
+                hash = 31 * hash + typeHash;
+            }
+            this.schemaHash = hash;
+        }
 
-        } else if (Parcelable.class.isAssignableFrom(type)) {
-            field.set(obj, bundle.getParcelable(key));
+        @Nullable
+        FieldAccessor findPacked(int signature) {
+            for (int i = 0; i < packed.length; i++) {
+                if (signatures[i] == signature) {
+                    return packed[i];
+                }
+            }
+            return null;
+        }
+    }
 
-        } else if (type.equals(ArrayList.class)
-                && genericTypes != null
-                && genericTypes[0] instanceof Class
-                && Parcelable.class.isAssignableFrom((Class<?>) genericTypes[0])) {
-            field.set(obj, bundle.getParcelableArrayList(key));
+    /**
+     * Snapshot of annotated fields cache statistics, see {@link #getCacheStats()}.
+     */
+    public static class CacheStats {
+        private final long hits;
+        private final long misses;
+        private final long buildTimeNanos;
+
+        CacheStats(long hits, long misses, long buildTimeNanos) {
+            this.hits = hits;
+            this.misses = misses;
+            this.buildTimeNanos = buildTimeNanos;
+        }
 
-        } else if (type.isArray() && Parcelable.class.isAssignableFrom(type.getComponentType())) {
-            field.set(obj, bundle.getParcelableArray(key));
+        /**
+         * Number of save / restore calls which reused already resolved fields.
+         */
+        public long getHits() {
+            return hits;
+        }
 
-        } else if (Serializable.class.isAssignableFrom(type)) {
-            field.set(obj, bundle.getSerializable(key));
+        /**
+         * Number of save / restore calls which had to resolve fields with reflection.
+         */
+        public long getMisses() {
+            return misses;
+        }
 
-        } else {
-            throw new RuntimeException("Unsupported field type: " + field.getName()
-                    + ", " + type.getSimpleName());
+        /**
+         * Total time spent on resolving fields with reflection, in nanoseconds.
+         */
+        public long getBuildTimeNanos() {
+            return buildTimeNanos;
         }
 
-        bundle.remove(key);
+        @Override
+        public String toString() {
+            return "CacheStats{hits=" + hits + ", misses=" + misses
+                    + ", buildTime=" + (buildTimeNanos / 1000L) + "us}";
+        }
     }
-}
\ No newline at end of file
+
+}
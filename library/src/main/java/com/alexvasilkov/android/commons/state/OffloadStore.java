@@ -0,0 +1,209 @@
+package com.alexvasilkov.android.commons.state;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * App-private file store for large instance state values which should not be sent through
+ * Binder. Each value is written into separate file and is identified by a token stored in the
+ * Bundle instead of the value itself.<br/>
+ * Files are deleted once restored or once newer state is saved for the same object and field.
+ * If saved bytes are not changed since previous save then existing file is reused.
+ * Files left from previous processes are deleted on initialization if they are older than
+ * {@link #MAX_AGE}.
+ */
+final class OffloadStore {
+
+    private static final String TAG = OffloadStore.class.getSimpleName();
+
+    private static final String DIR_NAME = "instance_state";
+    private static final long MAX_AGE = TimeUnit.DAYS.toMillis(7L);
+
+    private static volatile OffloadStore instance;
+
+    private final File dir;
+    private final int threshold;
+    private final String session = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicInteger counter = new AtomicInteger();
+    private final AtomicLong offloadedBytes = new AtomicLong();
+
+    // Latest files for each object and key, to reuse or delete them on subsequent saves
+    private final Map<Object, Map<String, Entry>> tokens = new WeakHashMap<>();
+
+    private OffloadStore(@NonNull File dir, int threshold) {
+        this.dir = dir;
+        this.threshold = threshold;
+    }
+
+    static void init(@NonNull Context context, int threshold) {
+        final OffloadStore store =
+                new OffloadStore(context.getDir(DIR_NAME, Context.MODE_PRIVATE), threshold);
+        instance = store;
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                store.deleteOutdated();
+            }
+        }, TAG).start();
+    }
+
+    @Nullable
+    static OffloadStore get() {
+        return instance;
+    }
+
+    int getThreshold() {
+        return threshold;
+    }
+
+    long getOffloadedBytes() {
+        return offloadedBytes.get();
+    }
+
+    /**
+     * Writes given bytes into new file and returns its token, or null if writing failed.
+     * Returns token of existing file if same bytes were already written for given object and key.
+     */
+    @Nullable
+    String write(@NonNull Object obj, @NonNull String key, @NonNull byte[] bytes) {
+        final Entry existing;
+        synchronized (tokens) {
+            Map<String, Entry> objTokens = tokens.get(obj);
+            existing = objTokens == null ? null : objTokens.get(key);
+        }
+        // Bytes are usually the same instance if value is not changed in incremental mode
+        final byte[] digest = existing != null && existing.bytes.get() == bytes
+                ? existing.digest : digest(bytes);
+        if (existing != null && digest != null && Arrays.equals(digest, existing.digest)) {
+            final File file = new File(dir, existing.token);
+            // File is deleted once restored, also it should not be considered outdated
+            if (file.setLastModified(System.currentTimeMillis())) {
+                return existing.token;
+            }
+        }
+
+        final String token = session + "-" + counter.incrementAndGet();
+        final File file = new File(dir, token);
+
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            out.write(bytes);
+        } catch (IOException e) {
+            Log.e(TAG, "Can't write instance state file", e);
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            return null;
+        } finally {
+            close(out);
+        }
+
+        offloadedBytes.addAndGet(bytes.length);
+
+        final Entry previous;
+        synchronized (tokens) {
+            Map<String, Entry> objTokens = tokens.get(obj);
+            if (objTokens == null) {
+                objTokens = new HashMap<>();
+                tokens.put(obj, objTokens);
+            }
+            previous = objTokens.put(key, new Entry(token, bytes, digest));
+        }
+        if (previous != null) {
+            delete(previous.token);
+        }
+
+        return token;
+    }
+
+    /**
+     * Maps file with given token into memory, returns null if file cannot be read.
+     */
+    @Nullable
+    ByteBuffer read(@NonNull String token) {
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(new File(dir, token), "r");
+            FileChannel channel = file.getChannel();
+            // Mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+        } catch (IOException e) {
+            Log.e(TAG, "Can't read instance state file", e);
+            return null;
+        } finally {
+            close(file);
+        }
+    }
+
+    void delete(@NonNull String token) {
+        //noinspection ResultOfMethodCallIgnored
+        new File(dir, token).delete();
+    }
+
+    private void deleteOutdated() {
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        final long minTime = System.currentTimeMillis() - MAX_AGE;
+        for (File file : files) {
+            if (file.lastModified() < minTime) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+    }
+
+    @Nullable
+    private static byte[] digest(@NonNull byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            return null; // Files won't be reused
+        }
+    }
+
+    private static void close(@Nullable Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+
+    private static class Entry {
+        final String token;
+        final WeakReference<byte[]> bytes;
+        final byte[] digest;
+
+        Entry(String token, byte[] bytes, byte[] digest) {
+            this.token = token;
+            this.bytes = new WeakReference<>(bytes);
+            this.digest = digest;
+        }
+    }
+
+}
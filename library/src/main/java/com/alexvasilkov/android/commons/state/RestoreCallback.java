@@ -0,0 +1,15 @@
+package com.alexvasilkov.android.commons.state;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Notifies that all fields of the object are restored, see
+ * {@link InstanceStateManager#restoreInstanceStateAsync(Object, android.os.Bundle,
+ * RestoreCallback)}.
+ */
+@SuppressWarnings("WeakerAccess") // Public API
+public interface RestoreCallback<T> {
+
+    void onStateRestored(@NonNull T obj);
+
+}
@@ -0,0 +1,202 @@
+package com.alexvasilkov.android.commons.state;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Measures parcelled size of entries written by {@link InstanceStateManager} for each
+ * Activity or Fragment class and warns when total size exceeds configured budget.<br/>
+ * Profiling is disabled by default, since measuring requires extra parcelling of each value.
+ * Use {@link #setEnabled(boolean)} to enable it in debug builds, then use
+ * {@link #getReport(Class)}, {@link #getReports()} or {@link #dump()} to check the results.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" }) // Public API
+public class StateProfiler {
+
+    private static final String TAG = StateProfiler.class.getSimpleName();
+
+    public static final int DEFAULT_BUDGET = 50 * 1024;
+
+    private static final Map<String, Report> reports = new HashMap<>();
+
+    private static volatile boolean enabled;
+    private static volatile int budget = DEFAULT_BUDGET;
+
+    private StateProfiler() {}
+
+    public static void setEnabled(boolean enabled) {
+        StateProfiler.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets maximum expected size of saved state of a single object, in bytes. Warning will be
+     * logged each time this budget is exceeded. Default value is {@link #DEFAULT_BUDGET}.
+     */
+    public static void setBudget(int bytes) {
+        budget = bytes;
+    }
+
+    public static int getBudget() {
+        return budget;
+    }
+
+    /**
+     * Returns report for the given class or null if there were no saves for this class.
+     */
+    @Nullable
+    public static Report getReport(@NonNull Class<?> clazz) {
+        synchronized (reports) {
+            return reports.get(clazz.getName());
+        }
+    }
+
+    /**
+     * Returns reports for all profiled classes, sorted by latest saved state size, largest first.
+     */
+    @NonNull
+    public static List<Report> getReports() {
+        final List<Report> list;
+        synchronized (reports) {
+            list = new ArrayList<>(reports.values());
+        }
+        Collections.sort(list, new Comparator<Report>() {
+            @Override
+            public int compare(Report r1, Report r2) {
+                return r1.lastBytes < r2.lastBytes ? 1 : (r1.lastBytes == r2.lastBytes ? 0 : -1);
+            }
+        });
+        return list;
+    }
+
+    /**
+     * Prints all reports to logcat.
+     */
+    public static void dump() {
+        for (Report report : getReports()) {
+            Log.i(TAG, report.toString());
+        }
+    }
+
+    public static void reset() {
+        synchronized (reports) {
+            reports.clear();
+        }
+    }
+
+    /**
+     * Measures all entries of the {@code state} which were not present in {@code keysBefore}.
+     */
+    static void onStateSaved(@NonNull Class<?> clazz, @NonNull Bundle state,
+            @NonNull Set<String> keysBefore) {
+        final Map<String, Integer> sizes = new LinkedHashMap<>();
+        int total = 0;
+
+        for (String key : state.keySet()) {
+            if (!keysBefore.contains(key)) {
+                int size = measure(key, state.get(key));
+                sizes.put(key, size);
+                total += size;
+            }
+        }
+
+        final Report report;
+        synchronized (reports) {
+            Report existing = reports.get(clazz.getName());
+            report = new Report(clazz.getName(), total,
+                    existing == null ? total : Math.max(existing.maxBytes, total),
+                    existing == null ? 1 : existing.saves + 1,
+                    Collections.unmodifiableMap(sizes));
+            reports.put(clazz.getName(), report);
+        }
+
+        if (total > budget) {
+            Log.w(TAG, "Instance state of " + clazz.getName() + " is " + total
+                    + " bytes, which exceeds the budget of " + budget + " bytes: " + sizes);
+        }
+    }
+
+    private static int measure(@NonNull String key, @Nullable Object value) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeValue(key);
+            parcel.writeValue(value);
+            return parcel.dataSize();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+
+    /**
+     * Saved state sizes of a single class.
+     */
+    public static class Report {
+        private final String className;
+        private final int lastBytes;
+        private final int maxBytes;
+        private final int saves;
+        private final Map<String, Integer> entries;
+
+        Report(String className, int lastBytes, int maxBytes, int saves,
+                Map<String, Integer> entries) {
+            this.className = className;
+            this.lastBytes = lastBytes;
+            this.maxBytes = maxBytes;
+            this.saves = saves;
+            this.entries = entries;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        /**
+         * Total parcelled size of the latest saved state, in bytes.
+         */
+        public int getLastBytes() {
+            return lastBytes;
+        }
+
+        /**
+         * Maximum total parcelled size of saved state, in bytes.
+         */
+        public int getMaxBytes() {
+            return maxBytes;
+        }
+
+        public int getSaves() {
+            return saves;
+        }
+
+        /**
+         * Parcelled size of each Bundle entry of the latest saved state (including key), in bytes.
+         */
+        @NonNull
+        public Map<String, Integer> getEntries() {
+            return entries;
+        }
+
+        @Override
+        public String toString() {
+            return className + ": last=" + lastBytes + "b, max=" + maxBytes + "b, saves=" + saves
+                    + ", entries=" + entries;
+        }
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.alexvasilkov.android.commons.state;
+
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+
+/**
+ * Saves and restores fields marked with {@link InstanceState} and {@link InstanceStateGson}
+ * annotations without reflection.<br/>
+ * Implementations named {@code <Class>$$StateSaver} are generated by
+ * {@code android-commons-processor} annotation processor and are picked up by
+ * {@link InstanceStateManager} automatically. Each implementation only handles fields declared
+ * directly in its class, super classes are handled separately.
+ */
+@SuppressWarnings("WeakerAccess") // Public API
+public interface StateSaver<T> {
+
+    void save(@NonNull T obj, @NonNull Bundle state);
+
+    void restore(@NonNull T obj, @NonNull Bundle state);
+
+}
@@ -0,0 +1,95 @@
+package com.alexvasilkov.android.commons.state;
+
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.alexvasilkov.android.commons.utils.GsonHelper;
+import com.google.gson.TypeAdapter;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * Helper methods used by generated {@link StateSaver} classes to store Gson and Serializable
+ * fields, so that incremental mode (see {@link InstanceStateManager#setIncrementalSaves(boolean)})
+ * works the same way as for fields handled with reflection.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" }) // Public API
+public final class StateSaverHelper {
+
+    private static final String TAG = StateSaverHelper.class.getSimpleName();
+
+    private StateSaverHelper() {}
+
+    /**
+     * Converts value to JSON bytes, reusing previously encoded bytes if value is immutable, not
+     * changed and incremental mode is enabled.
+     */
+    @Nullable
+    public static <T> byte[] toJsonBytes(@NonNull Object obj, @NonNull String key,
+            @Nullable T value, @NonNull TypeAdapter<T> adapter) {
+        if (value == null) {
+            return null;
+        }
+        if (!EncodedCache.isEnabled()) {
+            return GsonHelper.toJsonBytes(value, adapter);
+        }
+
+        byte[] bytes = (byte[]) EncodedCache.get(obj, key, value);
+        if (bytes == null) {
+            bytes = GsonHelper.toJsonBytes(value, adapter);
+            if (bytes != null) {
+                EncodedCache.put(obj, key, value, bytes);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Stores value with {@link Bundle#putSerializable(String, Serializable)}, or as serialized
+     * bytes if incremental mode is enabled. Bytes of immutable values are reused while value
+     * is not changed.
+     */
+    public static void putSerializable(@NonNull Object obj, @NonNull Bundle state,
+            @NonNull String key, @Nullable Serializable value) {
+        if (value == null || !EncodedCache.isEnabled()) {
+            state.putSerializable(key, value);
+            return;
+        }
+
+        byte[] bytes = (byte[]) EncodedCache.get(obj, key, value);
+        if (bytes == null) {
+            try {
+                bytes = FieldAccessors.serialize(value);
+            } catch (IOException e) {
+                throw new RuntimeException("Can't serialize field value: " + key, e);
+            }
+            EncodedCache.put(obj, key, value, bytes);
+        }
+        state.putByteArray(key + FieldAccessors.SERIALIZED_SUFFIX, bytes);
+    }
+
+    /**
+     * Retrieves value stored with {@link #putSerializable(Object, Bundle, String, Serializable)}.
+     * Extra key used to store serialized bytes is removed from the Bundle.
+     */
+    @Nullable
+    public static Serializable getSerializable(@NonNull Bundle state, @NonNull String key) {
+        final String bytesKey = key + FieldAccessors.SERIALIZED_SUFFIX;
+        final byte[] bytes = state.getByteArray(bytesKey);
+        if (bytes == null) {
+            return state.getSerializable(key);
+        }
+        state.remove(bytesKey);
+        try {
+            return (Serializable) FieldAccessors.deserialize(ByteBuffer.wrap(bytes));
+        } catch (IOException | ClassNotFoundException e) {
+            Log.e(TAG, "Can't deserialize field value: " + key, e);
+            return null;
+        }
+    }
+
+}
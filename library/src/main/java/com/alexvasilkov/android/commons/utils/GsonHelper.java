@@ -3,12 +3,27 @@ package com.alexvasilkov.android.commons.utils;
 import android.util.Log;
 
 import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.lang.reflect.Type;
+import java.nio.charset.Charset;
 
 @SuppressWarnings("unused") // Public API
 public class GsonHelper {
 
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
     private static Boolean hasGson;
     private static Object gson;
 
@@ -54,4 +69,103 @@ public class GsonHelper {
         }
     }
 
+    @SuppressWarnings("unchecked")
+    public static <T> T fromJson(Reader reader, Type type) {
+        try {
+            return reader == null ? null : (T) get().fromJson(reader, type);
+        } catch (Exception e) {
+            Log.e("GsonHelper", "Cannot parse JSON to object", e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns type adapter for the given type. Adapter can be cached and used with
+     * {@link #toJsonBytes(Object, TypeAdapter)} and {@link #fromJson(InputStream, TypeAdapter)}
+     * to avoid looking up the adapter on each call.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> TypeAdapter<T> getAdapter(Type type) {
+        return (TypeAdapter<T>) get().getAdapter(TypeToken.get(type));
+    }
+
+    /**
+     * Writes object as UTF-8 encoded JSON bytes using streaming writer, without creating
+     * intermediate string.
+     */
+    public static <T> byte[] toJsonBytes(T obj, TypeAdapter<T> adapter) {
+        if (obj == null) {
+            return null;
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, UTF_8));
+            // Same settings as used by default Gson instance
+            writer.setLenient(true);
+            writer.setHtmlSafe(true);
+            writer.setSerializeNulls(false);
+            adapter.write(writer, obj);
+            writer.close();
+            return out.toByteArray();
+        } catch (Exception e) {
+            Log.e("GsonHelper", "Cannot convert object to JSON", e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes object as JSON string using given type adapter, with same settings as used by
+     * {@link #toJson(Object)}.
+     */
+    public static <T> String toJson(T obj, TypeAdapter<T> adapter) {
+        if (obj == null) {
+            return null;
+        }
+        try {
+            StringWriter out = new StringWriter();
+            JsonWriter writer = new JsonWriter(out);
+            writer.setLenient(true);
+            writer.setHtmlSafe(true);
+            writer.setSerializeNulls(false);
+            adapter.write(writer, obj);
+            writer.close();
+            return out.toString();
+        } catch (Exception e) {
+            Log.e("GsonHelper", "Cannot convert object to JSON", e);
+            return null;
+        }
+    }
+
+    public static <T> T fromJson(String str, TypeAdapter<T> adapter) {
+        if (str == null) {
+            return null;
+        }
+        try {
+            JsonReader reader = new JsonReader(new StringReader(str));
+            reader.setLenient(true);
+            return adapter.read(reader);
+        } catch (Exception e) {
+            Log.e("GsonHelper", "Cannot parse JSON to object", e);
+            return null;
+        }
+    }
+
+    public static <T> T fromJson(byte[] json, TypeAdapter<T> adapter) {
+        return json == null ? null : fromJson(new ByteArrayInputStream(json), adapter);
+    }
+
+    /**
+     * Reads object from UTF-8 encoded JSON stream using streaming reader.
+     */
+    public static <T> T fromJson(InputStream in, TypeAdapter<T> adapter) {
+        try {
+            JsonReader reader = new JsonReader(new InputStreamReader(in, UTF_8));
+            reader.setLenient(true);
+            return adapter.read(reader);
+        } catch (Exception e) {
+            Log.e("GsonHelper", "Cannot parse JSON to object", e);
+            return null;
+        }
+    }
+
 }
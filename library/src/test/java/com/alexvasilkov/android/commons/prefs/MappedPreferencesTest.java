@@ -0,0 +1,231 @@
+package com.alexvasilkov.android.commons.prefs;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MappedPreferencesTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int HEADER_SIZE = 11; // Record header: type, lengths and checksum
+
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        file = File.createTempFile("prefs", ".mprefs");
+        assertTrue(file.delete());
+    }
+
+    @After
+    public void cleanup() {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    @Test
+    public void valuesAreReloaded() {
+        final Set<String> set = new HashSet<>(Arrays.asList("a", "bb", ""));
+        new MappedPreferences(file).edit()
+                .putString("string", "value")
+                .putInt("int", 1)
+                .putLong("long", 2L)
+                .putFloat("float", 3f)
+                .putBoolean("boolean", true)
+                .putStringSet("set", set)
+                .commit();
+
+        final MappedPreferences prefs = new MappedPreferences(file);
+        assertEquals("value", prefs.getString("string", null));
+        assertEquals(1, prefs.getInt("int", 0));
+        assertEquals(2L, prefs.getLong("long", 0L));
+        assertEquals(3f, prefs.getFloat("float", 0f), 0f);
+        assertTrue(prefs.getBoolean("boolean", false));
+        assertEquals(set, prefs.getStringSet("set", null));
+    }
+
+    @Test
+    public void removedAndClearedValuesAreNotReloaded() {
+        final MappedPreferences prefs = new MappedPreferences(file);
+        prefs.edit().putString("first", "1").putString("second", "2").commit();
+        prefs.edit().remove("first").commit();
+        assertEquals(keys("second"), new MappedPreferences(file).getAll().keySet());
+
+        prefs.edit().clear().putInt("third", 3).commit();
+        assertEquals(keys("third"), new MappedPreferences(file).getAll().keySet());
+    }
+
+    @Test
+    public void fixedSizeValuesAreUpdatedInPlace() {
+        final MappedPreferences prefs = new MappedPreferences(file);
+        prefs.edit().putInt("counter", 0).commit();
+        final long length = file.length();
+
+        for (int i = 1; i <= 1000; i++) {
+            prefs.edit().putInt("counter", i).apply();
+        }
+        assertEquals(length, file.length());
+        assertEquals(1000, new MappedPreferences(file).getInt("counter", 0));
+    }
+
+    @Test
+    public void interruptedInPlaceUpdateKeepsPreviousValue() throws IOException {
+        final MappedPreferences prefs = new MappedPreferences(file);
+        prefs.edit().putInt("counter", 1).putString("token", "abc").putLong("other", 3L).commit();
+        prefs.edit().putInt("counter", 2).commit(); // Second slot is active now
+
+        // Update was interrupted after partially writing new value into the first slot
+        write(valueStart("counter") + 8, new byte[] { 0, 0, 0, 3 });
+        assertEquals(values("counter", 2, "token", "abc", "other", 3L),
+                new MappedPreferences(file).getAll());
+    }
+
+    @Test
+    public void corruptedActiveSlotFallsBackToOtherSlot() throws IOException {
+        final MappedPreferences prefs = new MappedPreferences(file);
+        prefs.edit().putInt("counter", 1).putString("token", "abc").commit();
+        prefs.edit().putInt("counter", 2).commit(); // Second slot is active now
+
+        write(valueStart("counter") + 24, new byte[] { 1, 1, 1, 1 });
+        assertEquals(values("counter", 1, "token", "abc"), new MappedPreferences(file).getAll());
+    }
+
+    @Test
+    public void corruptedRecordIsSkipped() throws IOException {
+        new MappedPreferences(file).edit()
+                .putInt("counter", 1).putString("token", "abc").putLong("other", 3L).commit();
+
+        write(valueStart("token"), "xyz".getBytes(UTF_8));
+        final MappedPreferences prefs = new MappedPreferences(file);
+        assertEquals(values("counter", 1, "other", 3L), prefs.getAll());
+
+        prefs.edit().putString("token", "def").commit();
+        assertEquals(values("counter", 1, "token", "def", "other", 3L),
+                new MappedPreferences(file).getAll());
+    }
+
+    @Test
+    public void incompleteRecordIsDiscarded() throws IOException {
+        new MappedPreferences(file).edit().putString("token", "abc").commit();
+
+        // Record's type is written last, so incomplete record starts with zero byte
+        final int end = valueStart("token") + "abc".length() + 4;
+        write(end, new byte[] { 0, 0, 4, 0, 0, 0, 1, 0, 0, 0, 0, 'n', 'e', 'x', 't' });
+        final MappedPreferences prefs = new MappedPreferences(file);
+        assertEquals(values("token", "abc"), prefs.getAll());
+
+        prefs.edit().putString("next", "z").commit();
+        assertEquals(values("token", "abc", "next", "z"), new MappedPreferences(file).getAll());
+    }
+
+    @Test
+    public void corruptedLastRecordHeaderIsSkipped() throws Exception {
+        final MappedPreferences prefs = new MappedPreferences(file);
+        prefs.edit().putString("first", "1").commit();
+        prefs.edit().putString("second", "2").commit();
+
+        write(find("second") - HEADER_SIZE, new byte[] { -1 }); // Unknown record type
+        final MappedPreferences corrupted = new MappedPreferences(file);
+        assertEquals(values("first", "1"), corrupted.getAll());
+
+        corrupted.awaitCompaction();
+        corrupted.edit().putString("third", "3").commit();
+        assertEquals(values("first", "1", "third", "3"), new MappedPreferences(file).getAll());
+    }
+
+    @Test
+    public void recordsAfterCorruptedHeaderAreKept() throws Exception {
+        new MappedPreferences(file).edit().putString("first", "1").commit();
+        new MappedPreferences(file).edit().putString("second", "2").commit();
+        new MappedPreferences(file).edit().putString("third", "3").commit();
+        new MappedPreferences(file).edit().putString("fourth", "4").commit();
+
+        // Corrupting lowest byte of second record's value length
+        write(find("second") - HEADER_SIZE + 6, new byte[] { 100 });
+        final MappedPreferences prefs = new MappedPreferences(file);
+        assertEquals(values("first", "1", "third", "3", "fourth", "4"), prefs.getAll());
+
+        prefs.awaitCompaction();
+        assertEquals(values("first", "1", "third", "3", "fourth", "4"),
+                new MappedPreferences(file).getAll());
+    }
+
+    @Test
+    public void fileIsCompacted() throws Exception {
+        final MappedPreferences prefs = new MappedPreferences(file);
+        prefs.edit().putInt("counter", 42).commit();
+        for (int i = 0; i < 10000; i++) {
+            prefs.edit().putString("string", "value " + i).apply();
+        }
+        prefs.awaitCompaction();
+        assertTrue(file.length() < 64 * 1024);
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        prefs.edit().putInt("counter", 43).commit();
+        assertEquals(values("counter", 43, "string", "value 9999"),
+                new MappedPreferences(file).getAll());
+    }
+
+
+    private static Set<String> keys(String... keys) {
+        return new HashSet<>(Arrays.asList(keys));
+    }
+
+    private static Map<String, Object> values(Object... keysAndValues) {
+        final Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            map.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return map;
+    }
+
+    /**
+     * Position of the key's value, values are 8-bytes aligned.
+     */
+    private int valueStart(String key) throws IOException {
+        final int keyEnd = find(key) + key.getBytes(UTF_8).length;
+        return (keyEnd + 7) / 8 * 8;
+    }
+
+    private int find(String key) throws IOException {
+        final byte[] content = new byte[(int) file.length()];
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            raf.readFully(content);
+        } finally {
+            raf.close();
+        }
+        final byte[] pattern = key.getBytes(UTF_8);
+        for (int i = 0; i <= content.length - pattern.length; i++) {
+            if (Arrays.equals(pattern, Arrays.copyOfRange(content, i, i + pattern.length))) {
+                return i;
+            }
+        }
+        throw new AssertionError("Key is not found: " + key);
+    }
+
+    private void write(int pos, byte[] bytes) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(pos);
+            raf.write(bytes);
+        } finally {
+            raf.close();
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.alexvasilkov.android.commons.prefs;
+
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PrefsCodecsTest {
+
+    @Test
+    public void stringListRoundTrip() throws IOException {
+        final PrefsCodec<List<String>> codec = PrefsCodecs.stringList();
+        final List<String> list = Arrays.asList("a", "", null, "\u00fc,:\n", "last");
+        assertEquals(list, codec.decode(codec.encode(list), codec.getVersion()));
+
+        final List<String> empty = Collections.emptyList();
+        assertEquals(empty, codec.decode(codec.encode(empty), codec.getVersion()));
+    }
+
+    @Test
+    public void longArrayRoundTrip() throws IOException {
+        final PrefsCodec<long[]> codec = PrefsCodecs.longArray();
+        final long[] array = { 0L, -1L, Long.MAX_VALUE, Long.MIN_VALUE, 42L };
+        assertArrayEquals(array, codec.decode(codec.encode(array), codec.getVersion()));
+    }
+
+    @Test
+    public void corruptedLengthIsRejected() {
+        final PrefsCodec<List<String>> codec = PrefsCodecs.stringList();
+        try {
+            codec.decode(new byte[] { 0x7f, 0, 0, 0, 0, 0, 0, 1 }, codec.getVersion());
+            fail("Corrupted data is decoded");
+        } catch (IOException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void binaryCodecIsMoreCompactThanJson() throws IOException {
+        final List<String> list = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            list.add("Item \"" + i + "\"");
+        }
+        final byte[] binary = PrefsCodecs.stringList().encode(list);
+        final Type type = new TypeToken<List<String>>() {}.getType();
+        final byte[] json = PrefsCodecs.<List<String>>gson(type).encode(list);
+        assertTrue(binary.length < json.length);
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.alexvasilkov.android.commons.state;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InstanceStateManagerTest {
+
+    @Test
+    public void packedFieldsAreRestored() throws IllegalAccessException {
+        final Before before = new Before();
+        before.count = 3;
+        before.ids = new int[] { 1, 2 };
+
+        final Before restored = new Before();
+        InstanceStateManager.unpack(restored, InstanceStateManager.pack(before));
+        assertEquals(3, restored.count);
+        assertArrayEquals(new int[] { 1, 2 }, restored.ids);
+    }
+
+    @Test
+    public void packedFieldsAreRestoredAfterFieldsChanged() throws IllegalAccessException {
+        final Before before = new Before();
+        before.count = 3;
+        before.removed = 42L;
+        before.flag = true;
+        before.ids = new int[] { 1, 2 };
+        before.level = 7;
+
+        final After after = new After();
+        after.added = 1.5;
+        InstanceStateManager.unpack(after, InstanceStateManager.pack(before));
+
+        assertEquals(3, after.count);
+        assertTrue(after.flag);
+        assertArrayEquals(new int[] { 1, 2 }, after.ids);
+        assertEquals(1.5, after.added, 0.0); // Not stored, kept as is
+        assertEquals(0L, after.level); // Type was changed, not restored
+    }
+
+
+    @SuppressWarnings("unused")
+    private static class Before {
+        @InstanceState
+        int count;
+        @InstanceState
+        long removed;
+        @InstanceState
+        boolean flag;
+        @InstanceState
+        int[] ids;
+        @InstanceState
+        int level;
+    }
+
+    private static class After {
+        @InstanceState
+        int count;
+        @InstanceState
+        boolean flag;
+        @InstanceState
+        int[] ids;
+        @InstanceState
+        double added;
+        @InstanceState
+        long level;
+    }
+
+}
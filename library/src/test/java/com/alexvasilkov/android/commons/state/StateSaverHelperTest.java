@@ -0,0 +1,64 @@
+package com.alexvasilkov.android.commons.state;
+
+import com.alexvasilkov.android.commons.utils.GsonHelper;
+import com.google.gson.TypeAdapter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class StateSaverHelperTest {
+
+    private final Object owner = new Object();
+
+    @Before
+    public void setup() {
+        EncodedCache.setEnabled(true);
+    }
+
+    @After
+    public void cleanup() {
+        EncodedCache.setEnabled(false);
+    }
+
+    @Test
+    public void mutatedValueIsEncodedAgain() {
+        final TypeAdapter<Item> adapter = GsonHelper.get().getAdapter(Item.class);
+        final Item item = new Item();
+        item.name = "first";
+        StateSaverHelper.toJsonBytes(owner, "item", item, adapter);
+
+        item.name = "second"; // Same instance with the same identity hash code
+        final byte[] bytes = StateSaverHelper.toJsonBytes(owner, "item", item, adapter);
+        assertEquals("second", GsonHelper.fromJson(bytes, adapter).name);
+    }
+
+    @Test
+    public void immutableValueIsEncodedOnce() {
+        final TypeAdapter<ImmutableItem> adapter = GsonHelper.get().getAdapter(ImmutableItem.class);
+        final ImmutableItem item = new ImmutableItem("first");
+        final byte[] bytes = StateSaverHelper.toJsonBytes(owner, "item", item, adapter);
+        assertSame(bytes, StateSaverHelper.toJsonBytes(owner, "item", item, adapter));
+
+        final ImmutableItem other = new ImmutableItem("first");
+        assertNotSame(bytes, StateSaverHelper.toJsonBytes(owner, "item", other, adapter));
+    }
+
+
+    private static class Item {
+        String name;
+    }
+
+    private static class ImmutableItem implements ImmutableState {
+        final String name;
+
+        ImmutableItem(String name) {
+            this.name = name;
+        }
+    }
+
+}
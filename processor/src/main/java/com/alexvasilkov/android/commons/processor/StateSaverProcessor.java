@@ -0,0 +1,567 @@
+package com.alexvasilkov.android.commons.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates {@code <Class>$$StateSaver} classes for all classes containing fields marked with
+ * {@code InstanceState} or {@code InstanceStateGson} annotations. Generated savers are used by
+ * {@code InstanceStateManager} instead of reflection.<br/>
+ * Saver is not generated (and reflection is used at runtime) if any of annotated fields cannot
+ * be accessed from generated code (e.g. private or final fields) or if it is offloaded.
+ * Field types which cannot be stored into Bundle at all are reported as compilation errors.
+ */
+public class StateSaverProcessor extends AbstractProcessor {
+
+    private static final String STATE_PACKAGE = "com.alexvasilkov.android.commons.state";
+    private static final String INSTANCE_STATE = STATE_PACKAGE + ".InstanceState";
+    private static final String INSTANCE_STATE_GSON = STATE_PACKAGE + ".InstanceStateGson";
+    private static final String STATE_SAVER = STATE_PACKAGE + ".StateSaver";
+    private static final String SAVER_HELPER = STATE_PACKAGE + ".StateSaverHelper";
+    private static final String GSON_HELPER = "com.alexvasilkov.android.commons.utils.GsonHelper";
+    private static final String TYPE_TOKEN = "com.google.gson.reflect.TypeToken";
+    private static final String TYPE_ADAPTER = "com.google.gson.TypeAdapter";
+
+    private static final String SAVER_SUFFIX = "$$StateSaver";
+    private static final String PREFIX = "instance_state:";
+
+    private static final String BUNDLE = "android.os.Bundle";
+    private static final String PARCELABLE = "android.os.Parcelable";
+    private static final String SERIALIZABLE = "java.io.Serializable";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        Set<String> types = new HashSet<>();
+        types.add(INSTANCE_STATE);
+        types.add(INSTANCE_STATE_GSON);
+        return types;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env) {
+        final Map<TypeElement, List<VariableElement>> classes = new LinkedHashMap<>();
+
+        for (TypeElement annotation : annotations) {
+            for (Element element : env.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.FIELD) {
+                    continue;
+                }
+                TypeElement clazz = (TypeElement) element.getEnclosingElement();
+                List<VariableElement> fields = classes.get(clazz);
+                if (fields == null) {
+                    fields = new ArrayList<>();
+                    classes.put(clazz, fields);
+                }
+                if (!fields.contains(element)) {
+                    fields.add((VariableElement) element);
+                }
+            }
+        }
+
+        for (Map.Entry<TypeElement, List<VariableElement>> entry : classes.entrySet()) {
+            processClass(entry.getKey(), entry.getValue());
+        }
+
+        return true;
+    }
+
+    private void processClass(TypeElement clazz, List<VariableElement> fields) {
+        boolean hasErrors = checkDuplicates(clazz, fields);
+
+        String fallback = checkClassAccess(clazz);
+        final List<FieldCode> codes = new ArrayList<>();
+
+        for (VariableElement field : fields) {
+            FieldCode code = resolve(field);
+            if (code.error != null) {
+                error(field, code.error);
+                hasErrors = true;
+            } else if (code.fallback != null) {
+                if (fallback == null) {
+                    fallback = "field \"" + field.getSimpleName() + "\" " + code.fallback;
+                }
+            } else {
+                codes.add(code);
+            }
+        }
+
+        if (hasErrors) {
+            return;
+        }
+
+        if (fallback != null) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                    "State saver is not generated, reflection will be used: " + fallback, clazz);
+            return;
+        }
+
+        try {
+            write(clazz, codes);
+        } catch (IOException e) {
+            error(clazz, "Can't generate state saver: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks that field names are unique within class hierarchy, since field names are used
+     * as keys in Bundle.
+     */
+    private boolean checkDuplicates(TypeElement clazz, List<VariableElement> fields) {
+        final Set<String> names = new HashSet<>();
+        for (VariableElement field : fields) {
+            names.add(field.getSimpleName().toString());
+        }
+
+        boolean hasErrors = false;
+        TypeMirror superType = clazz.getSuperclass();
+
+        while (superType.getKind() == TypeKind.DECLARED) {
+            TypeElement superClass = (TypeElement) ((DeclaredType) superType).asElement();
+            for (VariableElement field : ElementFilter.fieldsIn(superClass.getEnclosedElements())) {
+                if (isAnnotated(field) && names.contains(field.getSimpleName().toString())) {
+                    error(clazz, "Duplicate key \"" + field.getSimpleName()
+                            + "\" of InstanceState, also declared in " + superClass);
+                    hasErrors = true;
+                }
+            }
+            superType = superClass.getSuperclass();
+        }
+
+        return hasErrors;
+    }
+
+    private String checkClassAccess(TypeElement clazz) {
+        if (!clazz.getTypeParameters().isEmpty()) {
+            return "class is generic";
+        }
+
+        Element element = clazz;
+        while (element instanceof TypeElement) {
+            TypeElement type = (TypeElement) element;
+            if (type.getNestingKind() == NestingKind.LOCAL
+                    || type.getNestingKind() == NestingKind.ANONYMOUS) {
+                return "class is local or anonymous";
+            }
+            if (type.getModifiers().contains(Modifier.PRIVATE)) {
+                return "class is private";
+            }
+            element = type.getEnclosingElement();
+        }
+        return null;
+    }
+
+    private FieldCode resolve(VariableElement field) {
+        final String name = field.getSimpleName().toString();
+        final String ref = "obj." + name;
+        final String key = "KEY_" + name;
+        final TypeMirror type = field.asType();
+
+        boolean isGson = hasAnnotation(field, INSTANCE_STATE_GSON);
+        boolean isState = hasAnnotation(field, INSTANCE_STATE);
+
+        if (isGson && isState) {
+            return FieldCode.error("Field cannot be marked with both InstanceState "
+                    + "and InstanceStateGson");
+        }
+
+        // Checking supported types first, to report unsupported types regardless of access
+        final FieldCode code = isGson ? resolveGson(name, ref, key, type)
+                : resolveBundle(ref, key, type);
+
+        final boolean isOffloaded = isOffloaded(field);
+        if (isOffloaded && !isGson && !code.encodable && code.error == null) {
+            return FieldCode.error("Offload is only supported for Serializable fields "
+                    + "and fields marked with InstanceStateGson");
+        }
+
+        if (code.error != null || code.fallback != null) {
+            return code;
+        }
+
+        if (isOffloaded) {
+            return FieldCode.fallback("is offloaded");
+        }
+
+        Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE)) {
+            return FieldCode.fallback("is private");
+        }
+        if (modifiers.contains(Modifier.FINAL)) {
+            return FieldCode.fallback("is final");
+        }
+
+        code.name = name;
+        code.key = key;
+        return code;
+    }
+
+    private FieldCode resolveGson(String name, String ref, String key, TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return FieldCode.fallback("is primitive");
+        }
+        if (hasTypeVariables(type)) {
+            return FieldCode.fallback("has generic type variables");
+        }
+
+        final String typeName = type.toString();
+        final String adapterConst = "ADAPTER_" + name;
+        final String typeValue = isGeneric(type)
+                ? "new " + TYPE_TOKEN + "<" + typeName + ">() {}.getType()"
+                : processingEnv.getTypeUtils().erasure(type).toString() + ".class";
+
+        FieldCode code = FieldCode.code(
+                "state.putByteArray(" + key + ", " + SAVER_HELPER + ".toJsonBytes(obj, " + key
+                        + ", " + ref + ", " + adapterConst + "));",
+                ref + " = " + GSON_HELPER + ".fromJson(state.getByteArray(" + key + "), "
+                        + adapterConst + ");");
+        code.constant = "private static final " + TYPE_ADAPTER + "<" + typeName + "> "
+                + adapterConst + " =\n            "
+                + GSON_HELPER + ".getAdapter(" + typeValue + ");";
+        return code;
+    }
+
+    private FieldCode resolveBundle(String ref, String key, TypeMirror type) {
+        final String primitive = primitiveName(type);
+        if (primitive != null) {
+            return direct(primitive, ref, key);
+        }
+
+        if (type.getKind() == TypeKind.ARRAY) {
+            final TypeMirror component = ((ArrayType) type).getComponentType();
+            final String componentPrimitive = primitiveName(component);
+
+            if (componentPrimitive != null) {
+                return direct(componentPrimitive + "Array", ref, key);
+            } else if (isType(component, "java.lang.CharSequence")) {
+                return direct("CharSequenceArray", ref, key);
+            } else if (isType(component, "java.lang.String")) {
+                return direct("StringArray", ref, key);
+            } else if (isType(component, PARCELABLE)) {
+                return direct("ParcelableArray", ref, key);
+            } else if (isAssignable(component, PARCELABLE)) {
+                final String local = ref.replace('.', '_');
+                final String componentName =
+                        processingEnv.getTypeUtils().erasure(component).toString();
+                return FieldCode.code(
+                        "state.putParcelableArray(" + key + ", " + ref + ");",
+                        "android.os.Parcelable[] " + local + " = state.getParcelableArray("
+                                + key + ");\n"
+                                + "        " + ref + " = " + local + " == null ? null : "
+                                + "java.util.Arrays.copyOf(" + local + ", " + local
+                                + ".length, " + componentName + "[].class);");
+            } else if (component.getKind() == TypeKind.TYPEVAR) {
+                return typeVariable();
+            } else {
+                return serializable(ref, key, type); // All arrays are serializable
+            }
+        }
+
+        if (type.getKind() == TypeKind.TYPEVAR) {
+            return typeVariable();
+        }
+
+        if (type.getKind() != TypeKind.DECLARED) {
+            return FieldCode.error("Unsupported field type: " + type);
+        }
+
+        if (isType(type, BUNDLE)) {
+            return direct("Bundle", ref, key);
+        } else if (isType(type, "java.lang.CharSequence")) {
+            return direct("CharSequence", ref, key);
+        } else if (isType(type, "java.lang.String")) {
+            return direct("String", ref, key);
+        } else if (isPrimitiveCollection(type)) {
+            return FieldCode.fallback("is stored as packed primitive array");
+        } else if (isAssignable(type, PARCELABLE)) {
+            return FieldCode.code(
+                    "state.putParcelable(" + key + ", " + ref + ");",
+                    ref + " = (" + type + ") state.getParcelable(" + key + ");");
+        } else if (isParcelableArrayList(type)) {
+            return direct("ParcelableArrayList", ref, key);
+        } else if (isAssignable(type, SERIALIZABLE)) {
+            return serializable(ref, key, type);
+        } else {
+            return FieldCode.error("Unsupported field type: " + type);
+        }
+    }
+
+    private static FieldCode direct(String method, String ref, String key) {
+        return FieldCode.code(
+                "state.put" + method + "(" + key + ", " + ref + ");",
+                ref + " = state.get" + method + "(" + key + ");");
+    }
+
+    private static FieldCode serializable(String ref, String key, TypeMirror type) {
+        FieldCode code = FieldCode.code(
+                SAVER_HELPER + ".putSerializable(obj, state, " + key + ", " + ref + ");",
+                ref + " = (" + type + ") " + SAVER_HELPER + ".getSerializable(state, " + key
+                        + ");");
+        code.encodable = true;
+        return code;
+    }
+
+    private static FieldCode typeVariable() {
+        FieldCode code = FieldCode.fallback("has generic type variables");
+        code.encodable = true; // Actual type is only known at runtime, can't be checked here
+        return code;
+    }
+
+    private boolean isParcelableArrayList(TypeMirror type) {
+        if (!isType(type, "java.util.ArrayList")) {
+            return false;
+        }
+        List<? extends TypeMirror> args = ((DeclaredType) type).getTypeArguments();
+        return args.size() == 1
+                && args.get(0).getKind() == TypeKind.DECLARED
+                && isAssignable(args.get(0), PARCELABLE);
+    }
+
+    /**
+     * Sparse arrays and boxed primitive lists are stored by reflection-based accessors only.
+     */
+    private boolean isPrimitiveCollection(TypeMirror type) {
+        if (isType(type, "android.util.SparseArray")
+                || isType(type, "android.util.SparseIntArray")
+                || isType(type, "android.util.SparseBooleanArray")
+                || isType(type, "android.util.LongSparseArray")
+                || isType(type, "android.support.v4.util.LongSparseArray")) {
+            return true;
+        }
+        if (!isType(type, "java.util.ArrayList")) {
+            return false;
+        }
+        List<? extends TypeMirror> args = ((DeclaredType) type).getTypeArguments();
+        return args.size() == 1
+                && (isType(args.get(0), "java.lang.Integer")
+                || isType(args.get(0), "java.lang.Long"));
+    }
+
+    private static String primitiveName(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "Boolean";
+            case BYTE:
+                return "Byte";
+            case CHAR:
+                return "Char";
+            case DOUBLE:
+                return "Double";
+            case FLOAT:
+                return "Float";
+            case INT:
+                return "Int";
+            case LONG:
+                return "Long";
+            case SHORT:
+                return "Short";
+            default:
+                return null;
+        }
+    }
+
+    private boolean isType(TypeMirror type, String className) {
+        return type.getKind() == TypeKind.DECLARED
+                && ((TypeElement) ((DeclaredType) type).asElement())
+                .getQualifiedName().contentEquals(className);
+    }
+
+    private boolean isAssignable(TypeMirror type, String className) {
+        TypeElement element = processingEnv.getElementUtils().getTypeElement(className);
+        return element != null && processingEnv.getTypeUtils().isAssignable(
+                processingEnv.getTypeUtils().erasure(type), element.asType());
+    }
+
+    private static boolean isGeneric(TypeMirror type) {
+        if (type.getKind() == TypeKind.ARRAY) {
+            return isGeneric(((ArrayType) type).getComponentType());
+        }
+        return type.getKind() == TypeKind.DECLARED
+                && !((DeclaredType) type).getTypeArguments().isEmpty();
+    }
+
+    private static boolean hasTypeVariables(TypeMirror type) {
+        switch (type.getKind()) {
+            case TYPEVAR:
+                return true;
+            case ARRAY:
+                return hasTypeVariables(((ArrayType) type).getComponentType());
+            case WILDCARD:
+                WildcardType wildcard = (WildcardType) type;
+                return (wildcard.getExtendsBound() != null
+                        && hasTypeVariables(wildcard.getExtendsBound()))
+                        || (wildcard.getSuperBound() != null
+                        && hasTypeVariables(wildcard.getSuperBound()));
+            case DECLARED:
+                for (TypeMirror arg : ((DeclaredType) type).getTypeArguments()) {
+                    if (hasTypeVariables(arg)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isAnnotated(Element element) {
+        return hasAnnotation(element, INSTANCE_STATE)
+                || hasAnnotation(element, INSTANCE_STATE_GSON);
+    }
+
+    private static boolean hasAnnotation(Element element, String annotation) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+            if (type.getQualifiedName().contentEquals(annotation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isOffloaded(Element element) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                    : mirror.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("offload")
+                        && Boolean.TRUE.equals(entry.getValue().getValue())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void write(TypeElement clazz, List<FieldCode> codes) throws IOException {
+        final String packageName =
+                processingEnv.getElementUtils().getPackageOf(clazz).getQualifiedName().toString();
+        final String className = binarySimpleName(clazz) + SAVER_SUFFIX;
+        final String target = clazz.getQualifiedName().toString();
+        final String fullName = packageName.isEmpty() ? className : packageName + "." + className;
+
+        final StringBuilder out = new StringBuilder();
+        out.append("// Generated code from android-commons-processor. Do not modify!\n");
+        if (!packageName.isEmpty()) {
+            out.append("package ").append(packageName).append(";\n\n");
+        }
+        out.append("public final class ").append(className)
+                .append(" implements ").append(STATE_SAVER).append('<').append(target)
+                .append("> {\n\n");
+
+        for (FieldCode code : codes) {
+            out.append("    private static final String ").append(code.key).append(" = \"")
+                    .append(PREFIX).append(code.name).append("\";\n");
+        }
+        for (FieldCode code : codes) {
+            if (code.constant != null) {
+                out.append("    ").append(code.constant).append('\n');
+            }
+        }
+
+        out.append("\n    @Override\n");
+        out.append("    public void save(").append(target).append(" obj, ")
+                .append(BUNDLE).append(" state) {\n");
+        for (FieldCode code : codes) {
+            out.append("        ").append(code.save).append('\n');
+        }
+        out.append("    }\n\n");
+
+        out.append("    @Override\n");
+        out.append("    @SuppressWarnings(\"unchecked\")\n");
+        out.append("    public void restore(").append(target).append(" obj, ")
+                .append(BUNDLE).append(" state) {\n");
+        for (FieldCode code : codes) {
+            out.append("        ").append(code.restore).append('\n');
+            out.append("        state.remove(").append(code.key).append(");\n");
+        }
+        out.append("    }\n\n");
+        out.append("}\n");
+
+        Writer writer = processingEnv.getFiler().createSourceFile(fullName, clazz).openWriter();
+        try {
+            writer.write(out.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Returns class name as used by {@link Class#getName()} but without package,
+     * e.g. {@code Outer$Inner}.
+     */
+    private static String binarySimpleName(TypeElement clazz) {
+        String name = clazz.getSimpleName().toString();
+        Element enclosing = clazz.getEnclosingElement();
+        while (enclosing instanceof TypeElement) {
+            name = enclosing.getSimpleName() + "$" + name;
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return name;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+
+    private static class FieldCode {
+        String name;
+        String key;
+        String save;
+        String restore;
+        String constant;
+        String fallback;
+        String error;
+        boolean encodable; // Whether value can be stored as bytes, required for offloading
+
+        static FieldCode code(String save, String restore) {
+            FieldCode code = new FieldCode();
+            code.save = save;
+            code.restore = restore;
+            return code;
+        }
+
+        static FieldCode fallback(String reason) {
+            FieldCode code = new FieldCode();
+            code.fallback = reason;
+            return code;
+        }
+
+        static FieldCode error(String message) {
+            FieldCode code = new FieldCode();
+            code.error = message;
+            return code;
+        }
+    }
+
+}